@@ -0,0 +1,79 @@
+package study.querydsl.benchmark;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import study.querydsl.QuerydslApplication;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 벤치마크용 스프링 컨텍스트
+ * 내장 H2(in-memory)를 사용하고, SQL 로그와 로컬 초기 데이터(InitMember)는 끈다.
+ */
+public final class BenchmarkContext {
+
+    private static final int SEED_BATCH_SIZE = 1_000;
+
+    private BenchmarkContext() {
+    }
+
+    public static ConfigurableApplicationContext start(String database, String... properties) {
+        List<String> args = new ArrayList<>(Arrays.asList(
+                "--spring.profiles.active=jmh",
+                "--spring.main.web-application-type=none",
+                "--spring.main.banner-mode=off",
+                "--spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1",
+                "--spring.jpa.properties.hibernate.format_sql=false",
+                "--spring.jpa.properties.hibernate.use_sql_comments=false",
+                "--spring.jpa.properties.hibernate.jdbc.batch_size=" + SEED_BATCH_SIZE,
+                "--decorator.datasource.p6spy.enable-logging=false",
+                "--logging.level.root=warn",
+                "--logging.level.org.hibernate.SQL=warn",
+                "--logging.level.org.hibernate.type=warn"));
+        for (String property : properties) {
+            args.add("--" + property);
+        }
+        return new SpringApplicationBuilder(QuerydslApplication.class)
+                .run(args.toArray(new String[0]));
+    }
+
+    /**
+     * members 명의 회원을 teams 개의 팀에 고르게 나눠서 저장한다
+     * 나이는 0 ~ 99 사이에서 고정 시드로 뽑기 때문에 실행할 때마다 같은 데이터가 만들어진다.
+     */
+    public static void seed(ConfigurableApplicationContext context, int members, int teams) {
+        EntityManagerFactory emf = context.getBean(EntityManagerFactory.class);
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            Long[] teamIds = new Long[teams];
+            for (int i = 0; i < teams; i++) {
+                Team team = new Team("team" + i);
+                em.persist(team);
+                teamIds[i] = team.getId();
+            }
+            em.flush();
+            em.clear();
+
+            Random random = new Random(42);
+            for (int i = 0; i < members; i++) {
+                Team team = em.getReference(Team.class, teamIds[i % teams]);
+                em.persist(Member.ofTeamReference("member" + i, random.nextInt(100), team));
+                if ((i + 1) % SEED_BATCH_SIZE == 0) {
+                    em.flush();
+                    em.clear();
+                }
+            }
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberSearchKey;
+import study.querydsl.dto.TeamStatisticsDto;
+import study.querydsl.repository.MemberColumnStore;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 메모리 컬럼 저장소의 집계 지연
+ * DB 없이 무작위 회원을 바로 저장소에 넣고 count, 나이 histogram, 백분위수, 팀별 집계를 잰다.
+ *
+ * 실행: ./gradlew jmh -PjmhInclude=ColumnStoreBenchmark
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ColumnStoreBenchmark {
+
+    private static final int TEAMS = 100;
+
+    @Param({"10000000"})
+    public int members;
+
+    private ForkJoinPool pool;
+    private MemberColumnStore store;
+    private MemberSearchKey all;
+    private MemberSearchKey teamAndAge;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        store = new MemberColumnStore(65536, pool);
+        Random random = new Random(42);
+        for (long team = 1; team <= TEAMS; team++) {
+            store.teamNamed(team, "team" + team);
+        }
+        for (int i = 1; i <= members; i++) {
+            store.upsert(i, random.nextInt(100), 1L + random.nextInt(TEAMS), "member" + i);
+        }
+        System.out.printf("%ncolumn store: %d members, %d segments, estimated %,d bytes%n",
+                store.size(), store.segmentCount(), store.estimatedBytes());
+
+        all = MemberSearchKey.of(new MemberSearchCondition());
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("team7");
+        condition.setAgeGoe(20);
+        condition.setAgeLoe(40);
+        teamAndAge = MemberSearchKey.of(condition);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Benchmark
+    public long countTeamAndAge() {
+        return store.count(teamAndAge);
+    }
+
+    @Benchmark
+    public Map<Integer, Long> ageHistogram() {
+        return store.ageHistogram(all, 10);
+    }
+
+    @Benchmark
+    public Map<Double, Integer> agePercentiles() {
+        return store.agePercentiles(all, 50, 90, 99);
+    }
+
+    @Benchmark
+    public List<TeamStatisticsDto> teamBreakdown() {
+        return store.teamBreakdown(all);
+    }
+}
@@ -0,0 +1,76 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamColumns;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberRepository;
+
+import java.util.List;
+
+/**
+ * 전체 회원 조회를 List&lt;MemberTeamDto&gt; 로 받을 때와 MemberTeamColumns 로 받을 때의 비교
+ * OperationsPerInvocation 을 회원 수로 두었기 때문에 gc 프로파일러의 gc.alloc.rate.norm 이 곧 row 당 할당 바이트다.
+ * gc.count, gc.time 으로 GC 횟수와 정지 시간도 함께 비교한다.
+ *
+ * 실행: ./gradlew jmh -PjmhInclude=ColumnarResultBenchmark
+ */
+@State(Scope.Benchmark)
+public class ColumnarResultBenchmark {
+
+    private static final int MEMBERS = 100_000;
+
+    @Param({"100"})
+    public int teams;
+
+    private ConfigurableApplicationContext context;
+    private TransactionTemplate readOnly;
+    private MemberRepository memberRepository;
+    private final MemberSearchCondition all = new MemberSearchCondition();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("columnar");
+        BenchmarkContext.seed(context, MEMBERS, teams);
+        readOnly = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnly.setReadOnly(true);
+        memberRepository = context.getBean(MemberRepository.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MEMBERS)
+    public long dtoList() {
+        List<MemberTeamDto> result = readOnly.execute(status -> memberRepository.searchByMultipleWhere(all, true));
+        long ageSum = 0;
+        for (MemberTeamDto dto : result) {
+            ageSum += dto.getAge();
+        }
+        return ageSum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MEMBERS)
+    public long columnar() {
+        MemberTeamColumns result = readOnly.execute(status -> memberRepository.searchColumnar(all));
+        long ageSum = 0;
+        for (int i = 0; i < result.size(); i++) {
+            ageSum += result.age(i);
+        }
+        return ageSum;
+    }
+}
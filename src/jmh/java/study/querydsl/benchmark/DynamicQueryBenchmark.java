@@ -0,0 +1,198 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+
+import java.util.List;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 같은 동적 검색을 만드는 세 가지 방법의 비용 비교
+ * - BooleanBuilder (MemberJpaRepository.searchByBuilder)
+ * - where 다중 파라미터 (MemberRepository.searchByMultipleWhere)
+ * - QuerydslPredicateExecutor (MemberRepository.findAll(Predicate))
+ * 조건 생성, JPQL 직렬화, 실제 실행을 따로 측정한다.
+ *
+ * 실행: ./gradlew jmh -PjmhInclude=DynamicQueryBenchmark
+ */
+@State(Scope.Benchmark)
+public class DynamicQueryBenchmark {
+
+    @Param({"10000"})
+    public int members;
+
+    @Param({"100"})
+    public int teams;
+
+    /**
+     * none: 조건 없음, username: 이름 일치, teamAge: 팀 + 나이 범위, all: 네 조건 모두
+     */
+    @Param({"none", "username", "teamAge", "all"})
+    public String shape;
+
+    private ConfigurableApplicationContext context;
+    private TransactionTemplate readOnly;
+    private MemberJpaRepository memberJpaRepository;
+    private MemberRepository memberRepository;
+    private MemberSearchCondition condition;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("dynamic-query");
+        BenchmarkContext.seed(context, members, teams);
+
+        readOnly = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnly.setReadOnly(true);
+        memberJpaRepository = context.getBean(MemberJpaRepository.class);
+        memberRepository = context.getBean(MemberRepository.class);
+        condition = condition(shape);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public BooleanBuilder buildBooleanBuilder() {
+        return booleanBuilder(condition);
+    }
+
+    @Benchmark
+    public BooleanExpression[] buildMultipleWhere() {
+        return multipleWhere(condition);
+    }
+
+    @Benchmark
+    public String serializeBooleanBuilder() {
+        return projection()
+                .where(booleanBuilder(condition))
+                .toString();
+    }
+
+    @Benchmark
+    public String serializeMultipleWhere() {
+        return projection()
+                .where(multipleWhere(condition))
+                .toString();
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> executeBooleanBuilder() {
+        return readOnly.execute(status -> memberJpaRepository.searchByBuilder(condition));
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> executeMultipleWhere() {
+        return readOnly.execute(status -> memberRepository.searchByMultipleWhere(condition, true));
+    }
+
+    @Benchmark
+    public Iterable<Member> executePredicateExecutor() {
+        return readOnly.execute(status -> memberRepository.findAll(predicateExecutorBuilder(condition)));
+    }
+
+    static MemberSearchCondition condition(String shape) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        switch (shape) {
+            case "none":
+                break;
+            case "username":
+                condition.setUsername("member77");
+                break;
+            case "teamAge":
+                condition.setTeamName("team7");
+                condition.setAgeGoe(20);
+                condition.setAgeLoe(40);
+                break;
+            case "all":
+                condition.setUsername("member77");
+                condition.setTeamName("team77");
+                condition.setAgeGoe(0);
+                condition.setAgeLoe(99);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown shape: " + shape);
+        }
+        return condition;
+    }
+
+    private static JPAQuery<MemberTeamDto> projection() {
+        return new JPAQuery<>()
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")
+                ))
+                .from(member)
+                .leftJoin(member.team, team);
+    }
+
+    private static BooleanBuilder booleanBuilder(MemberSearchCondition cond) {
+        BooleanBuilder builder = new BooleanBuilder();
+        if (StringUtils.hasText(cond.getUsername())) {
+            builder.and(member.username.eq(cond.getUsername()));
+        }
+        if (StringUtils.hasText(cond.getTeamName())) {
+            builder.and(team.name.eq(cond.getTeamName()));
+        }
+        if (cond.getAgeGoe() != null) {
+            builder.and(member.age.goe(cond.getAgeGoe()));
+        }
+        if (cond.getAgeLoe() != null) {
+            builder.and(member.age.loe(cond.getAgeLoe()));
+        }
+        return builder;
+    }
+
+    private static BooleanExpression[] multipleWhere(MemberSearchCondition cond) {
+        return new BooleanExpression[]{
+                StringUtils.hasText(cond.getUsername()) ? member.username.eq(cond.getUsername()) : null,
+                StringUtils.hasText(cond.getTeamName()) ? team.name.eq(cond.getTeamName()) : null,
+                cond.getAgeGoe() == null ? null : member.age.goe(cond.getAgeGoe()),
+                cond.getAgeLoe() == null ? null : member.age.loe(cond.getAgeLoe())
+        };
+    }
+
+    /**
+     * QuerydslPredicateExecutor 는 조인을 직접 지정할 수 없어서 member.team 경로로 조건을 건다
+     */
+    private static BooleanBuilder predicateExecutorBuilder(MemberSearchCondition cond) {
+        BooleanBuilder builder = new BooleanBuilder();
+        if (StringUtils.hasText(cond.getUsername())) {
+            builder.and(member.username.eq(cond.getUsername()));
+        }
+        if (StringUtils.hasText(cond.getTeamName())) {
+            builder.and(member.team.name.eq(cond.getTeamName()));
+        }
+        if (cond.getAgeGoe() != null) {
+            builder.and(member.age.goe(cond.getAgeGoe()));
+        }
+        if (cond.getAgeLoe() != null) {
+            builder.and(member.age.loe(cond.getAgeLoe()));
+        }
+        return builder;
+    }
+}
@@ -0,0 +1,73 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * 식별자 allocation size 에 따른 insert 처리량
+ * allocationSize=1 은 기존 @GeneratedValue 처럼 insert 마다 시퀀스를 한번씩 호출하는 경우다.
+ * 결과의 ops/us 에 OperationsPerInvocation 이 반영되어 있으므로 그대로 초당 insert 수로 읽으면 된다.
+ *
+ * 실행: ./gradlew jmh -PjmhInclude=MemberInsertBenchmark
+ */
+@State(Scope.Benchmark)
+public class MemberInsertBenchmark {
+
+    private static final int ROWS = 1_000;
+
+    @Param({"1", "50", "1000"})
+    public int allocationSize;
+
+    private ConfigurableApplicationContext context;
+    private TransactionTemplate transactionTemplate;
+    private EntityManager em;
+    private Long teamId;
+    private long sequence;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("insert-" + allocationSize,
+                "spring.jpa.properties.querydsl.id.member.allocation-size=" + allocationSize);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        em = SharedEntityManagerCreator.createSharedEntityManager(context.getBean(EntityManagerFactory.class));
+
+        teamId = transactionTemplate.execute(status -> {
+            Team team = new Team("team");
+            em.persist(team);
+            return team.getId();
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void insert() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Team team = em.getReference(Team.class, teamId);
+            for (int i = 0; i < ROWS; i++) {
+                em.persist(Member.ofTeamReference("member" + sequence++, i % 100, team));
+            }
+            em.flush();
+            em.clear();
+        });
+    }
+}
@@ -0,0 +1,118 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberSearchKey;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberSearchShapeCache;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+
+/**
+ * 검색 조건 16가지 모양(MemberSearchKey.shape)별 content(첫 페이지 20건) / count 쿼리 비용
+ * indexed=false 면 시드 후 Member 의 검색용 인덱스를 지워서 같은 데이터로 비교한다.
+ * team.name 유니크 인덱스(natural id)는 제약 조건이라 양쪽 모두 남아 있다.
+ * H2 는 member.team_id 외래 키에 맨 앞 컬럼이 team_id 인 idx_member_team_age 를 같이 쓰므로, 외래 키를 남겨두면
+ * 이 인덱스를 지울 수 없다. 그래서 두 경우 모두 시드 후 member 의 외래 키를 지운다 (벤치마크는 조회만 하므로 결과에 영향이 없다).
+ *
+ * 실행: ./gradlew jmh -PjmhInclude=SearchIndexBenchmark
+ */
+@State(Scope.Benchmark)
+public class SearchIndexBenchmark {
+
+    private static final String[] MEMBER_INDEXES = {
+            "idx_member_username", "idx_member_age", "idx_member_team_age"
+    };
+
+    @Param({"1000000"})
+    public int members;
+
+    @Param({"1000"})
+    public int teams;
+
+    @Param({"true", "false"})
+    public boolean indexed;
+
+    @Param({"0", "1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11", "12", "13", "14", "15"})
+    public int shape;
+
+    private ConfigurableApplicationContext context;
+    private TransactionTemplate readOnly;
+    private EntityManager em;
+    private MemberSearchShapeCache shapeCache;
+    private MemberSearchKey key;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("search-index-" + indexed + "-" + shape);
+        BenchmarkContext.seed(context, members, teams);
+
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        List<String> foreignKeys = jdbcTemplate.queryForList(
+                "select constraint_name from information_schema.table_constraints"
+                        + " where table_name = 'MEMBER' and constraint_type = 'FOREIGN KEY'", String.class);
+        for (String foreignKey : foreignKeys) {
+            jdbcTemplate.execute("alter table member drop constraint " + foreignKey);
+        }
+        if (!indexed) {
+            for (String index : MEMBER_INDEXES) {
+                jdbcTemplate.execute("drop index " + index);
+            }
+        }
+        jdbcTemplate.execute("analyze");
+
+        readOnly = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnly.setReadOnly(true);
+        em = SharedEntityManagerCreator.createSharedEntityManager(context.getBean(EntityManagerFactory.class));
+        shapeCache = context.getBean(MemberSearchShapeCache.class);
+        key = MemberSearchKey.of(condition(shape));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> content() {
+        return readOnly.execute(status -> shapeCache.fetch(em, key, 0, 20));
+    }
+
+    @Benchmark
+    public Long count() {
+        return readOnly.execute(status -> shapeCache.count(em, key));
+    }
+
+    /**
+     * shape 의 비트에 해당하는 조건만 채운다 (BenchmarkContext.seed 데이터 기준)
+     */
+    static MemberSearchCondition condition(int shape) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        if ((shape & MemberSearchKey.USERNAME) != 0) {
+            condition.setUsername("member777");
+        }
+        if ((shape & MemberSearchKey.TEAM_NAME) != 0) {
+            condition.setTeamName("team7");
+        }
+        if ((shape & MemberSearchKey.AGE_GOE) != 0) {
+            condition.setAgeGoe(20);
+        }
+        if ((shape & MemberSearchKey.AGE_LOE) != 0) {
+            condition.setAgeLoe(40);
+        }
+        return condition;
+    }
+}
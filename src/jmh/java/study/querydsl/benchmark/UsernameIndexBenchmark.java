@@ -0,0 +1,105 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import study.querydsl.repository.UsernameNgramIndex;
+
+import java.util.Random;
+
+/**
+ * username 3-gram 색인의 조회 지연과 메모리 사용량
+ * DB 없이 무작위 username 을 바로 색인에 넣고, 같은 배열을 처음부터 끝까지 contains 로 훑는 것(like '%x%' 전체 스캔)과 비교한다.
+ * 메모리는 setup 에서 색인 전후 힙 사용량과 estimatedBytes 를 출력한다.
+ *
+ * 실행: ./gradlew jmh -PjmhInclude=UsernameIndexBenchmark
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class UsernameIndexBenchmark {
+
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz0123456789";
+    private static final int MAX_CANDIDATES = 10_000;
+
+    @Param({"10000000"})
+    public int usernames;
+
+    private String[] names;
+    private UsernameNgramIndex index;
+    private String rareFragment;
+    private String prefix;
+    private String commonPrefix;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        names = new String[usernames];
+        for (int i = 0; i < usernames; i++) {
+            names[i] = randomName(random);
+        }
+
+        long before = usedHeap();
+        index = new UsernameNgramIndex();
+        for (int i = 0; i < usernames; i++) {
+            index.add(i + 1, names[i]);
+        }
+        long after = usedHeap();
+        System.out.printf("%nusername index: %d names, %d grams, estimated %,d bytes, measured %,d bytes%n",
+                index.size(), index.gramCount(), index.estimatedBytes(), after - before);
+
+        String sample = names[usernames / 2];
+        rareFragment = sample.substring(1, 6);
+        prefix = sample.substring(0, 4);
+        commonPrefix = sample.substring(0, 1);
+    }
+
+    @Benchmark
+    public int[] indexContainsRare() {
+        return index.search(rareFragment, null, MAX_CANDIDATES);
+    }
+
+    @Benchmark
+    public int[] indexStartsWith() {
+        return index.search(null, prefix, MAX_CANDIDATES);
+    }
+
+    /**
+     * 한 글자 prefix 는 후보가 많아서 null(like 로 대체)을 반환한다. 그 판단에 드는 비용
+     */
+    @Benchmark
+    public int[] indexStartsWithCommon() {
+        return index.search(null, commonPrefix, MAX_CANDIDATES);
+    }
+
+    @Benchmark
+    public int scanContainsRare() {
+        int matches = 0;
+        for (String name : names) {
+            if (name.contains(rareFragment)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    private static String randomName(Random random) {
+        int length = 6 + random.nextInt(7);
+        StringBuilder name = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            name.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return name.toString();
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
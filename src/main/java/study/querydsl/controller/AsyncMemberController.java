@@ -0,0 +1,62 @@
+package study.querydsl.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.SearchPage;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.service.BulkheadFullException;
+import study.querydsl.service.SearchBulkhead;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * MemberController 검색 엔드포인트의 비동기 버전
+ * 쿼리는 SearchBulkhead 의 스레드에서 실행되고 요청 스레드는 바로 반환된다.
+ * 실행기가 가득 차면 503 + Retry-After 로 응답한다.
+ */
+@RestController
+@RequiredArgsConstructor
+public class AsyncMemberController {
+
+    private final MemberJpaRepository memberJpaRepository;
+    private final MemberRepository memberRepository;
+    private final SearchBulkhead searchBulkhead;
+
+    @GetMapping("/async/v1/members")
+    public CompletableFuture<List<MemberTeamDto>> searchMemberV1(MemberSearchCondition condition,
+                                                                 @RequestParam(defaultValue = "false") boolean bypassCache) {
+        return searchBulkhead.submit("v1", () -> memberJpaRepository.searchByMultipleWhere(condition, bypassCache));
+    }
+
+    @GetMapping("/async/v3/members")
+    public CompletableFuture<SearchPage<MemberTeamDto>> searchMemberV3(MemberSearchCondition condition, Pageable pageable,
+                                                                       @RequestParam(required = false) String totalToken,
+                                                                       @RequestParam(defaultValue = "false") boolean estimate) {
+        return searchBulkhead.submit("v3",
+                () -> memberRepository.searchPageComplex(condition, pageable, totalToken, estimate));
+    }
+
+    @GetMapping("/async/v5/members")
+    public CompletableFuture<Slice<MemberTeamDto>> searchMemberV5(MemberSearchCondition condition, Pageable pageable) {
+        return searchBulkhead.submit("v5", () -> memberRepository.searchSlice(condition, pageable));
+    }
+
+    @ExceptionHandler(BulkheadFullException.class)
+    public ResponseEntity<Void> bulkheadFull(BulkheadFullException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, e.getRetryAfter().getSeconds())))
+                .build();
+    }
+}
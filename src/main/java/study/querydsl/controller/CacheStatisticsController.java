@@ -0,0 +1,46 @@
+package study.querydsl.controller;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 2차 캐시 리전별 hit/miss/put 통계
+ * hibernate.generate_statistics 가 꺼져 있으면 빈 결과를 돌려준다.
+ */
+@RestController
+public class CacheStatisticsController {
+
+    private final Statistics statistics;
+
+    public CacheStatisticsController(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @GetMapping("/cache/stats")
+    public Map<String, Map<String, Long>> cacheStatistics() {
+        Map<String, Map<String, Long>> result = new LinkedHashMap<>();
+        if (!statistics.isStatisticsEnabled()) {
+            return result;
+        }
+        for (String regionName : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics region = statistics.getCacheRegionStatistics(regionName);
+            if (region == null) {
+                continue;
+            }
+            Map<String, Long> counts = new LinkedHashMap<>();
+            counts.put("hit", region.getHitCount());
+            counts.put("miss", region.getMissCount());
+            counts.put("put", region.getPutCount());
+            counts.put("elementsInMemory", region.getElementCountInMemory());
+            result.put(regionName, counts);
+        }
+        return result;
+    }
+}
@@ -1,12 +1,16 @@
 package study.querydsl.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
+import study.querydsl.service.MemberSeeder;
 
 import javax.annotation.PostConstruct;
 import javax.persistence.EntityManager;
@@ -18,10 +22,37 @@ import javax.persistence.PersistenceContext;
 public class InitMember {
 
     private final InitMemberService initMemberService;
+    private final MemberSeeder memberSeeder;
+
+    @Value("${querydsl.seed.enabled:false}")
+    private boolean seedEnabled;
+    @Value("${querydsl.seed.members:1000000}")
+    private long seedMembers;
+    @Value("${querydsl.seed.teams:1000}")
+    private int seedTeams;
+    @Value("${querydsl.seed.distribution:ROUND_ROBIN}")
+    private MemberSeeder.Distribution seedDistribution;
+    @Value("${querydsl.seed.skew:2.0}")
+    private double seedSkew;
+    @Value("${querydsl.seed.writers:1}")
+    private int seedWriters;
 
     @PostConstruct
     public void init() {
-        initMemberService.init();
+        if (!seedEnabled) {
+            initMemberService.init();
+        }
+    }
+
+    /**
+     * querydsl.seed.enabled=true 이면 100명 대신 부하 테스트용 대량 데이터를 적재한다
+     * 수백만 건 적재는 몇 분이 걸리므로 빈 초기화(@PostConstruct)가 아니라 애플리케이션이 뜬 뒤에 실행한다.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        if (seedEnabled) {
+            memberSeeder.seed(seedMembers, seedTeams, seedDistribution, seedSkew, seedWriters);
+        }
     }
 
     @Service
@@ -0,0 +1,58 @@
+package study.querydsl.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberSearchKey;
+import study.querydsl.dto.TeamStatisticsDto;
+import study.querydsl.repository.MemberColumnSnapshot;
+import study.querydsl.repository.MemberColumnStore;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 메모리 컬럼 저장소(querydsl.column-snapshot.enabled)에서 DB 조회 없이 집계한다
+ * 저장소가 꺼져 있거나 적재 중이면 503 을 반환한다.
+ */
+@RestController
+@RequiredArgsConstructor
+public class MemberAnalyticsController {
+
+    private final MemberColumnSnapshot columnSnapshot;
+
+    @GetMapping("/members/analytics/count")
+    public ResponseEntity<Long> count(MemberSearchCondition condition) {
+        return query(store -> store.count(MemberSearchKey.of(condition)));
+    }
+
+    @GetMapping("/members/analytics/age-histogram")
+    public ResponseEntity<Map<Integer, Long>> ageHistogram(MemberSearchCondition condition,
+                                                           @RequestParam(defaultValue = "10") int bucketWidth) {
+        return query(store -> store.ageHistogram(MemberSearchKey.of(condition), bucketWidth));
+    }
+
+    @GetMapping("/members/analytics/age-percentiles")
+    public ResponseEntity<Map<Double, Integer>> agePercentiles(MemberSearchCondition condition,
+                                                               @RequestParam(defaultValue = "50,90,99") double[] p) {
+        return query(store -> store.agePercentiles(MemberSearchKey.of(condition), p));
+    }
+
+    @GetMapping("/members/analytics/teams")
+    public ResponseEntity<List<TeamStatisticsDto>> teamBreakdown(MemberSearchCondition condition) {
+        return query(store -> store.teamBreakdown(MemberSearchKey.of(condition)));
+    }
+
+    private <T> ResponseEntity<T> query(Function<MemberColumnStore, T> function) {
+        MemberColumnStore store = columnSnapshot.current();
+        if (store == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(function.apply(store));
+    }
+}
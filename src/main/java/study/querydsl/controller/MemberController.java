@@ -1,16 +1,40 @@
 package study.querydsl.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.data.web.SpringDataWebProperties;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import study.querydsl.dto.CursorSlice;
+import study.querydsl.dto.ExportReport;
+import study.querydsl.dto.ImportReport;
+import study.querydsl.dto.MemberCursor;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.SearchPage;
 import study.querydsl.repository.MemberJpaRepository;
 import study.querydsl.repository.MemberRepository;
+import study.querydsl.service.MemberExportService;
+import study.querydsl.service.MemberImportService;
+import study.querydsl.service.PartitionedExportService;
 
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequiredArgsConstructor
@@ -18,19 +42,129 @@ public class MemberController {
 
     private final MemberJpaRepository memberJpaRepository;
     private final MemberRepository memberRepository;
+    private final MemberExportService memberExportService;
+    private final PartitionedExportService partitionedExportService;
+    private final MemberImportService memberImportService;
+    private final SpringDataWebProperties dataWebProperties;
 
     @GetMapping("/v1/members")
-    public List<MemberTeamDto> searchMemberV1(MemberSearchCondition condition) {
-        return memberJpaRepository.searchByMultipleWhere(condition);
+    public List<MemberTeamDto> searchMemberV1(MemberSearchCondition condition,
+                                              @RequestParam(defaultValue = "false") boolean bypassCache) {
+        return memberJpaRepository.searchByMultipleWhere(condition, bypassCache);
+    }
+
+    /**
+     * v1 과 같은 검색 결과를 한번에 List 로 만들지 않고 NDJSON 으로 흘려보낸다
+     */
+    @GetMapping(value = "/v1/members/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportMemberV1(MemberSearchCondition condition,
+                                                                HttpServletRequest request) {
+        AsyncTimeoutInterceptor.withTimeout(request, memberExportService.getTimeout());
+        StreamingResponseBody body = out -> memberExportService.exportNdjson(condition, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    /**
+     * member_id 구간별로 나눠 동시에 읽고 id 순서대로 이어 붙인 NDJSON
+     */
+    @GetMapping(value = "/v1/members/export/parallel", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportMemberParallel(MemberSearchCondition condition,
+                                                                      @RequestParam(defaultValue = "4") int partitions,
+                                                                      HttpServletRequest request) {
+        checkPartitions(partitions);
+        AsyncTimeoutInterceptor.withTimeout(request, memberExportService.getTimeout());
+        StreamingResponseBody body = out -> partitionedExportService.exportMerged(condition, partitions, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    /**
+     * 구간별 NDJSON 파일을 서버에 만들고 구간별 row 수, 처리량을 반환한다
+     */
+    @PostMapping("/v1/members/export/files")
+    public ExportReport exportMemberFiles(MemberSearchCondition condition,
+                                          @RequestParam(defaultValue = "4") int partitions) throws IOException {
+        checkPartitions(partitions);
+        return partitionedExportService.exportToFiles(condition, partitions);
+    }
+
+    /**
+     * CSV(username,age,teamName) 또는 NDJSON 본문을 스트리밍으로 읽어 대량 적재한다
+     */
+    @PostMapping(value = "/v1/members/import", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    public ImportReport importMembers(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                      InputStream body) throws IOException {
+        MemberImportService.Format format = MediaType.APPLICATION_NDJSON.isCompatibleWith(MediaType.parseMediaType(contentType))
+                ? MemberImportService.Format.NDJSON
+                : MemberImportService.Format.CSV;
+        return memberImportService.importMembers(body, format);
     }
 
     @GetMapping("/v2/members")
     public Page<MemberTeamDto> searchMemberV2(MemberSearchCondition condition, Pageable pageable) {
+        checkOffset(pageable);
         return memberRepository.searchPageSimple(condition, pageable);
     }
 
     @GetMapping("/v3/members")
-    public Page<MemberTeamDto> searchMemberV3(MemberSearchCondition condition, Pageable pageable) {
-        return memberRepository.searchPageComplex(condition, pageable);
+    public SearchPage<MemberTeamDto> searchMemberV3(MemberSearchCondition condition, Pageable pageable,
+                                                    @RequestParam(required = false) String totalToken,
+                                                    @RequestParam(defaultValue = "false") boolean estimate) {
+        checkOffset(pageable);
+        return memberRepository.searchPageComplex(condition, pageable, totalToken, estimate);
+    }
+
+    @GetMapping("/v4/members")
+    public CursorSlice<MemberTeamDto> searchMemberV4(MemberSearchCondition condition,
+                                                    @RequestParam(required = false) String after,
+                                                    @RequestParam(defaultValue = "20") int size) {
+        // Pageable 을 받는 엔드포인트와 같은 최대 크기(spring.data.web.pageable.max-page-size)를 쓴다
+        int maxSize = dataWebProperties.getPageable().getMaxPageSize();
+        if (size < 1 || size > maxSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size must be between 1 and " + maxSize);
+        }
+        MemberCursor cursor;
+        try {
+            cursor = after == null ? null : MemberCursor.decode(after);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+        return memberRepository.searchByCursor(condition, cursor, size);
+    }
+
+    /**
+     * 무한 스크롤용. count 쿼리 없이 다음 페이지 존재 여부(hasNext)만 내려준다
+     */
+    @GetMapping("/v5/members")
+    public Slice<MemberTeamDto> searchMemberV5(MemberSearchCondition condition, Pageable pageable) {
+        checkOffset(pageable);
+        return memberRepository.searchSlice(condition, pageable);
+    }
+
+    /**
+     * 병렬 export 실행기 큐가 가득 찼다
+     */
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<Void> exportBusy() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+    }
+
+    /**
+     * page * size 가 int 범위를 넘으면 JPA 의 firstResult 로 넘길 수 없다
+     */
+    private static void checkOffset(Pageable pageable) {
+        if (pageable.getOffset() > Integer.MAX_VALUE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "page * size must not exceed " + Integer.MAX_VALUE);
+        }
+    }
+
+    private void checkPartitions(int partitions) {
+        if (partitions < 1 || partitions > partitionedExportService.getMaxPartitions()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "partitions must be between 1 and " + partitionedExportService.getMaxPartitions());
+        }
     }
 }
@@ -0,0 +1,31 @@
+package study.querydsl.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.dto.TeamStatisticsDto;
+import study.querydsl.service.TeamStatisticsService;
+
+import java.util.List;
+
+/**
+ * 팀별 회원 나이 통계. group by 쿼리 없이 TeamStatisticsService 가 들고 있는 값을 반환한다
+ */
+@RestController
+@RequiredArgsConstructor
+public class TeamStatisticsController {
+
+    private final TeamStatisticsService teamStatisticsService;
+
+    @GetMapping("/teams/stats")
+    public List<TeamStatisticsDto> teamStatistics() {
+        return teamStatisticsService.findAll();
+    }
+
+    @GetMapping("/teams/stats/{teamName}")
+    public ResponseEntity<TeamStatisticsDto> teamStatistics(@PathVariable String teamName) {
+        return ResponseEntity.of(teamStatisticsService.findByTeamName(teamName));
+    }
+}
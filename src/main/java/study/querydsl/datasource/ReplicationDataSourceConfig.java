@@ -0,0 +1,74 @@
+package study.querydsl.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * querydsl.datasource.replication.enabled=true 일 때 primary/replica 라우팅 DataSource 를 등록한다
+ * 커넥션 풀은 빈으로 노출하지 않고 여기서 만들고 닫는다. 애플리케이션에는 라우팅 DataSource 하나만 보인다.
+ * open-in-view 가 켜져 있으면 요청 하나가 처음 얻은 커넥션(읽기라면 replica)을 끝까지 쓰기 때문에,
+ * 같은 요청에서 이어지는 쓰기 트랜잭션이 replica 커넥션으로 실행된다. 그래서 spring.jpa.open-in-view=false 가 아니면 시작하지 않는다.
+ */
+@Configuration
+@EnableConfigurationProperties(ReplicationProperties.class)
+@ConditionalOnProperty(prefix = "querydsl.datasource.replication", name = "enabled", havingValue = "true")
+public class ReplicationDataSourceConfig {
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties dataSourceProperties, ReplicationProperties replication,
+                                 Environment environment) {
+        if (environment.getProperty("spring.jpa.open-in-view", Boolean.class, true)) {
+            throw new IllegalStateException("querydsl.datasource.replication.enabled requires spring.jpa.open-in-view=false");
+        }
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        primary.setPoolName("primary");
+        pools.add(primary);
+
+        List<DataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < replication.getReplicas().size(); i++) {
+            ReplicationProperties.Replica properties = replication.getReplicas().get(i);
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + i);
+            replica.setJdbcUrl(properties.getUrl());
+            replica.setUsername(properties.getUsername());
+            replica.setPassword(properties.getPassword());
+            replica.setMaximumPoolSize(properties.getMaximumPoolSize());
+            replica.setReadOnly(true);
+            pools.add(replica);
+            replicas.add(replica);
+        }
+
+        return new LazyConnectionDataSourceProxy(new ReplicationRoutingDataSource(
+                primary, replicas, replication.getStrategy(), replication.getPinAfterWrite()));
+    }
+
+    @Bean
+    public ReplicationPinFilter replicationPinFilter() {
+        return new ReplicationPinFilter();
+    }
+
+    @PreDestroy
+    public void close() {
+        pools.forEach(HikariDataSource::close);
+    }
+}
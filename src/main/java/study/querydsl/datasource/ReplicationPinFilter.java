@@ -0,0 +1,28 @@
+package study.querydsl.datasource;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 쓰기 후 primary 고정(pinAfterWrite)을 HTTP 요청 하나로 한정한다
+ * 고정은 스레드 로컬이라, 지우지 않으면 같은 Tomcat 스레드가 다음에 처리하는 다른 사용자의 요청까지 primary 로 간다.
+ * 요청 시작과 끝에 지워서 같은 요청 안에서 쓰고 다시 읽는 경우에만 적용되게 한다.
+ */
+public class ReplicationPinFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        ReplicationRoutingDataSource.clearPin();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReplicationRoutingDataSource.clearPin();
+        }
+    }
+}
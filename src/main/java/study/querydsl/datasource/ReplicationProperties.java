@@ -0,0 +1,30 @@
+package study.querydsl.datasource;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * querydsl.datasource.replication 설정
+ * primary 는 spring.datasource 를 그대로 사용하고, replicas 에 읽기 전용 DB 를 나열한다.
+ */
+@Data
+@ConfigurationProperties("querydsl.datasource.replication")
+public class ReplicationProperties {
+
+    private boolean enabled;
+    private ReplicationRoutingDataSource.Strategy strategy = ReplicationRoutingDataSource.Strategy.ROUND_ROBIN;
+    private Duration pinAfterWrite = Duration.ofSeconds(1);
+    private List<Replica> replicas = new ArrayList<>();
+
+    @Data
+    public static class Replica {
+        private String url;
+        private String username;
+        private String password;
+        private int maximumPoolSize = 10;
+    }
+}
@@ -0,0 +1,136 @@
+package study.querydsl.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 읽기 전용 트랜잭션(@Transactional(readOnly = true))은 replica 로, 나머지는 primary 로 보내는 DataSource
+ * 트랜잭션의 readOnly 여부는 커넥션을 실제로 얻는 시점에 알 수 있으므로 반드시 LazyConnectionDataSourceProxy 로 감싸서 쓴다.
+ * 쓰기 트랜잭션이 커밋되면 같은 스레드의 읽기는 pinAfterWrite 동안 primary 로 보낸다 (replica 복제 지연 대비).
+ * 고정은 스레드 로컬이고 웹 요청에서는 ReplicationPinFilter 가 요청이 끝날 때 지운다. 즉 같은 요청 안의 읽기에만 적용된다.
+ * 같은 사용자의 다음 요청이나 /async 실행기 스레드의 읽기는 고정되지 않으므로, 방금 쓴 값을 반드시 읽어야 하는 조회는
+ * readOnly 가 아닌 트랜잭션으로 실행해서 primary 를 쓰게 한다.
+ * 직접 primary 로 고정하려면 pinToPrimary 를 호출한다.
+ */
+public class ReplicationRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Strategy {
+        ROUND_ROBIN, LEAST_LOADED
+    }
+
+    static final String PRIMARY = "primary";
+
+    private static final ThreadLocal<Long> PINNED_UNTIL = new ThreadLocal<>();
+
+    private final List<String> replicaKeys = new ArrayList<>();
+    private final List<DataSource> replicas;
+    private final Strategy strategy;
+    private final long pinAfterWriteNanos;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicationRoutingDataSource(DataSource primary, List<DataSource> replicas,
+                                        Strategy strategy, Duration pinAfterWrite) {
+        this.replicas = replicas;
+        this.strategy = strategy;
+        this.pinAfterWriteNanos = pinAfterWrite.toNanos();
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            String key = "replica-" + i;
+            replicaKeys.add(key);
+            targets.put(key, replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    /**
+     * 현재 스레드의 읽기를 duration 동안 primary 로 보낸다
+     */
+    public static void pinToPrimary(Duration duration) {
+        long until = System.nanoTime() + duration.toNanos();
+        Long current = PINNED_UNTIL.get();
+        if (current == null || current - until < 0) {
+            PINNED_UNTIL.set(until);
+        }
+    }
+
+    public static void clearPin() {
+        PINNED_UNTIL.remove();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (replicaKeys.isEmpty() || isPinned()) {
+                return PRIMARY;
+            }
+            return replicaKeys.get(strategy == Strategy.LEAST_LOADED ? leastLoaded() : roundRobin());
+        }
+        if (pinAfterWriteNanos > 0 && TransactionSynchronizationManager.isActualTransactionActive()
+                && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    pinToPrimary(Duration.ofNanos(pinAfterWriteNanos));
+                }
+            });
+        }
+        return PRIMARY;
+    }
+
+    private static boolean isPinned() {
+        Long until = PINNED_UNTIL.get();
+        if (until == null) {
+            return false;
+        }
+        if (System.nanoTime() - until >= 0) {
+            PINNED_UNTIL.remove();
+            return false;
+        }
+        return true;
+    }
+
+    private int roundRobin() {
+        return Math.floorMod(next.getAndIncrement(), replicaKeys.size());
+    }
+
+    /**
+     * 사용 중인 커넥션이 가장 적은 replica. 같으면 round robin 순서로 고른다
+     */
+    private int leastLoaded() {
+        int start = roundRobin();
+        int best = start;
+        int bestLoad = Integer.MAX_VALUE;
+        for (int i = 0; i < replicas.size(); i++) {
+            int index = (start + i) % replicas.size();
+            int load = activeConnections(replicas.get(index));
+            if (load < bestLoad) {
+                best = index;
+                bestLoad = load;
+            }
+        }
+        return best;
+    }
+
+    private static int activeConnections(DataSource dataSource) {
+        if (dataSource instanceof HikariDataSource) {
+            HikariPoolMXBean pool = ((HikariDataSource) dataSource).getHikariPoolMXBean();
+            return pool == null ? 0 : pool.getActiveConnections();
+        }
+        return 0;
+    }
+}
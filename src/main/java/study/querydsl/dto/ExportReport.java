@@ -0,0 +1,50 @@
+package study.querydsl.dto;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * 병렬 export 결과. 구간별 row 수와 걸린 시간, 전체 처리량(rows/s)
+ */
+@Getter
+@ToString
+public class ExportReport {
+
+    private final int threads;
+    private final long rows;
+    private final long elapsedMillis;
+    private final long rowsPerSecond;
+    private final List<Partition> partitions;
+
+    public ExportReport(int threads, long elapsedMillis, List<Partition> partitions) {
+        this.threads = threads;
+        this.rows = partitions.stream().mapToLong(Partition::getRows).sum();
+        this.elapsedMillis = elapsedMillis;
+        this.rowsPerSecond = elapsedMillis == 0 ? rows : rows * 1000 / elapsedMillis;
+        this.partitions = partitions;
+    }
+
+    /**
+     * member_id 가 [fromId, toId) 인 구간 하나. file 은 export 폴더(querydsl.export.partitioned.directory) 기준 상대 경로
+     */
+    @Getter
+    @ToString
+    public static class Partition {
+
+        private final long fromId;
+        private final long toId;
+        private final long rows;
+        private final long elapsedMillis;
+        private final String file;
+
+        public Partition(long fromId, long toId, long rows, long elapsedMillis, String file) {
+            this.fromId = fromId;
+            this.toId = toId;
+            this.rows = rows;
+            this.elapsedMillis = elapsedMillis;
+            this.file = file;
+        }
+    }
+}
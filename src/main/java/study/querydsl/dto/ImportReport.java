@@ -0,0 +1,31 @@
+package study.querydsl.dto;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 회원 대량 적재 결과
+ * rejectFile 은 거부된 row 가 있을 때만 있다 (줄 번호, 사유, 원본 줄).
+ */
+@Getter
+@ToString
+public class ImportReport {
+
+    private final long read;
+    private final long imported;
+    private final long rejected;
+    private final long teamsCreated;
+    private final long elapsedMillis;
+    private final long rowsPerSecond;
+    private final String rejectFile;
+
+    public ImportReport(long read, long imported, long rejected, long teamsCreated, long elapsedMillis, String rejectFile) {
+        this.read = read;
+        this.imported = imported;
+        this.rejected = rejected;
+        this.teamsCreated = teamsCreated;
+        this.elapsedMillis = elapsedMillis;
+        this.rowsPerSecond = elapsedMillis == 0 ? imported : imported * 1000 / elapsedMillis;
+        this.rejectFile = rejectFile;
+    }
+}
@@ -14,4 +14,8 @@ public class MemberSearchCondition {
     private String teamName;
     private Integer ageGoe;
     private Integer ageLoe;
+
+    // username 부분 일치, 앞부분 일치 (대소문자 무시)
+    private String usernameContains;
+    private String usernameStartsWith;
 }
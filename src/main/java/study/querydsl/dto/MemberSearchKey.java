@@ -0,0 +1,78 @@
+package study.querydsl.dto;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.util.StringUtils;
+
+/**
+ * 캐시 키로 쓰기 위해 정규화한 MemberSearchCondition
+ * 동적 쿼리에서 조건이 빠지는 경우(빈 문자열, 공백)는 모두 null 로 맞춰서 같은 쿼리는 같은 키가 되도록 한다.
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+public class MemberSearchKey {
+
+    public static final int USERNAME = 1;
+    public static final int TEAM_NAME = 1 << 1;
+    public static final int AGE_GOE = 1 << 2;
+    public static final int AGE_LOE = 1 << 3;
+    public static final int SHAPE_COUNT = 1 << 4;
+
+    private final String username;
+    private final String teamName;
+    private final Integer ageGoe;
+    private final Integer ageLoe;
+    private final String usernameContains;
+    private final String usernameStartsWith;
+
+    private MemberSearchKey(String username, String teamName, Integer ageGoe, Integer ageLoe,
+                            String usernameContains, String usernameStartsWith) {
+        this.username = username;
+        this.teamName = teamName;
+        this.ageGoe = ageGoe;
+        this.ageLoe = ageLoe;
+        this.usernameContains = usernameContains;
+        this.usernameStartsWith = usernameStartsWith;
+    }
+
+    public static MemberSearchKey of(MemberSearchCondition condition) {
+        return new MemberSearchKey(
+                StringUtils.hasText(condition.getUsername()) ? condition.getUsername() : null,
+                StringUtils.hasText(condition.getTeamName()) ? condition.getTeamName() : null,
+                condition.getAgeGoe(),
+                condition.getAgeLoe(),
+                StringUtils.hasText(condition.getUsernameContains()) ? condition.getUsernameContains() : null,
+                StringUtils.hasText(condition.getUsernameStartsWith()) ? condition.getUsernameStartsWith() : null);
+    }
+
+    /**
+     * username 부분 일치 / 앞부분 일치 조건이 있는지
+     * 이 조건은 shape 에 포함되지 않는다. 미리 만든 JPQL 대신 username 인덱스로 후보 id 를 구해서 동적으로 조회한다.
+     */
+    public boolean hasUsernameFragment() {
+        return usernameContains != null || usernameStartsWith != null;
+    }
+
+    /**
+     * 어떤 조건이 들어있는지를 나타내는 비트마스크
+     * 조건이 4개이므로 쿼리 모양은 16가지(0 ~ 15) 뿐이다.
+     */
+    public int shape() {
+        int shape = 0;
+        if (username != null) {
+            shape |= USERNAME;
+        }
+        if (teamName != null) {
+            shape |= TEAM_NAME;
+        }
+        if (ageGoe != null) {
+            shape |= AGE_GOE;
+        }
+        if (ageLoe != null) {
+            shape |= AGE_LOE;
+        }
+        return shape;
+    }
+}
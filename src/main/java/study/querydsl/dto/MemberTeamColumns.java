@@ -0,0 +1,178 @@
+package study.querydsl.dto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 대용량 분석 조회용 컬럼 형태의 결과
+ * row 마다 MemberTeamDto 를 만드는 대신 컬럼별 primitive 배열에 담는다.
+ * teamName 은 사전(dictionary) 인코딩해서 같은 팀 이름은 한번만 들고 있는다.
+ * username 은 회원마다 거의 다르므로 사전을 만들어도 줄어드는 것이 없고 HashMap 항목만 늘어난다. 그래서 row 마다 그대로 담는다.
+ * 팀이 없는 회원은 teamId 가 0, teamName 코드가 -1 이다.
+ */
+public class MemberTeamColumns {
+
+    public static final long NO_TEAM = 0L;
+
+    private final int size;
+    private final long[] memberIds;
+    private final int[] ages;
+    private final long[] teamIds;
+    private final String[] usernames;
+    private final int[] teamNameCodes;
+    private final String[] teamNames;
+
+    private MemberTeamColumns(Builder builder) {
+        this.size = builder.size;
+        this.memberIds = Arrays.copyOf(builder.memberIds, size);
+        this.ages = Arrays.copyOf(builder.ages, size);
+        this.teamIds = Arrays.copyOf(builder.teamIds, size);
+        this.usernames = Arrays.copyOf(builder.usernames, size);
+        this.teamNameCodes = Arrays.copyOf(builder.teamNameCodes, size);
+        this.teamNames = builder.teamNames.toArray(new String[0]);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long memberId(int row) {
+        return memberIds[row];
+    }
+
+    public int age(int row) {
+        return ages[row];
+    }
+
+    public long teamId(int row) {
+        return teamIds[row];
+    }
+
+    public String username(int row) {
+        return usernames[row];
+    }
+
+    public String teamName(int row) {
+        int code = teamNameCodes[row];
+        return code < 0 ? null : teamNames[code];
+    }
+
+    public int teamNameCode(int row) {
+        return teamNameCodes[row];
+    }
+
+    public String[] teamNameDictionary() {
+        return teamNames.clone();
+    }
+
+    /**
+     * 하나의 Row 객체를 옮겨가며 모든 row 를 방문한다 (flyweight)
+     * 콜백 밖으로 Row 를 들고 나가면 안 된다. 필요하면 toDto() 로 복사한다.
+     */
+    public void forEach(Consumer<Row> action) {
+        Row row = new Row();
+        for (int i = 0; i < size; i++) {
+            row.index = i;
+            action.accept(row);
+        }
+    }
+
+    public Row row(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("row " + index + ", size " + size);
+        }
+        Row row = new Row();
+        row.index = index;
+        return row;
+    }
+
+    public class Row {
+        private int index;
+
+        public int getIndex() {
+            return index;
+        }
+
+        public long getMemberId() {
+            return memberIds[index];
+        }
+
+        public String getUsername() {
+            return username(index);
+        }
+
+        public int getAge() {
+            return ages[index];
+        }
+
+        public Long getTeamId() {
+            return teamIds[index] == NO_TEAM ? null : teamIds[index];
+        }
+
+        public String getTeamName() {
+            return teamName(index);
+        }
+
+        public MemberTeamDto toDto() {
+            return new MemberTeamDto(getMemberId(), getUsername(), getAge(), getTeamId(), getTeamName());
+        }
+    }
+
+    public static class Builder {
+        private int size;
+        private long[] memberIds = new long[64];
+        private int[] ages = new int[64];
+        private long[] teamIds = new long[64];
+        private String[] usernames = new String[64];
+        private int[] teamNameCodes = new int[64];
+        private final List<String> teamNames = new ArrayList<>();
+        private final Map<String, Integer> teamNameDictionary = new HashMap<>();
+
+        private Builder() {
+        }
+
+        public Builder add(long memberId, String username, int age, Long teamId, String teamName) {
+            if (size == memberIds.length) {
+                grow();
+            }
+            memberIds[size] = memberId;
+            ages[size] = age;
+            teamIds[size] = teamId == null ? NO_TEAM : teamId;
+            usernames[size] = username;
+            teamNameCodes[size] = teamName == null ? -1 : encode(teamName);
+            size++;
+            return this;
+        }
+
+        public MemberTeamColumns build() {
+            return new MemberTeamColumns(this);
+        }
+
+        private void grow() {
+            int capacity = memberIds.length * 2;
+            memberIds = Arrays.copyOf(memberIds, capacity);
+            ages = Arrays.copyOf(ages, capacity);
+            teamIds = Arrays.copyOf(teamIds, capacity);
+            usernames = Arrays.copyOf(usernames, capacity);
+            teamNameCodes = Arrays.copyOf(teamNameCodes, capacity);
+        }
+
+        private int encode(String teamName) {
+            Integer code = teamNameDictionary.get(teamName);
+            if (code == null) {
+                code = teamNames.size();
+                teamNameDictionary.put(teamName, code);
+                teamNames.add(teamName);
+            }
+            return code;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package study.querydsl.dto;
+
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+/**
+ * total count 를 재사용할 수 있는 토큰을 함께 내려주는 Page
+ * 다음 페이지를 요청할 때 totalToken 을 같이 보내면 count 쿼리를 생략한다.
+ * totalExact 가 false 면 total 은 근사값이고 totalToken 은 발급하지 않는다.
+ */
+public class SearchPage<T> extends PageImpl<T> {
+
+    private final String totalToken;
+    private final boolean totalExact;
+
+    public SearchPage(List<T> content, Pageable pageable, long total, String totalToken) {
+        this(content, pageable, total, totalToken, true);
+    }
+
+    public SearchPage(List<T> content, Pageable pageable, long total, String totalToken, boolean totalExact) {
+        super(content, pageable, total);
+        this.totalToken = totalToken;
+        this.totalExact = totalExact;
+    }
+
+    public static <T> SearchPage<T> estimated(List<T> content, Pageable pageable, long estimatedTotal) {
+        return new SearchPage<>(content, pageable, estimatedTotal, null, false);
+    }
+
+    public String getTotalToken() {
+        return totalToken;
+    }
+
+    public boolean isTotalExact() {
+        return totalExact;
+    }
+}
@@ -0,0 +1,31 @@
+package study.querydsl.dto;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 팀별 회원 나이 통계 (count, sum, avg, min, max)
+ * QuerydslBasicTest 의 groupBy(team.name) 집계와 같은 값이다.
+ */
+@Getter
+@ToString
+public class TeamStatisticsDto {
+
+    private final Long teamId;
+    private final String teamName;
+    private final long count;
+    private final long sum;
+    private final double avg;
+    private final Integer min;
+    private final Integer max;
+
+    public TeamStatisticsDto(Long teamId, String teamName, long count, long sum, Integer min, Integer max) {
+        this.teamId = teamId;
+        this.teamName = teamName;
+        this.count = count;
+        this.sum = sum;
+        this.avg = count == 0 ? 0 : (double) sum / count;
+        this.min = min;
+        this.max = max;
+    }
+}
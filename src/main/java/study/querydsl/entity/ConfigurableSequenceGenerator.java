@@ -0,0 +1,33 @@
+package study.querydsl.entity;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+/**
+ * allocation size(increment_size)를 설정 파일에서 엔티티별로 바꿀 수 있는 시퀀스 생성기
+ * increment_size_setting 파라미터에 지정한 설정 키(spring.jpa.properties.* 로 넘긴 값)가 있으면
+ * 애노테이션에 적힌 increment_size 대신 그 값을 사용한다.
+ */
+public class ConfigurableSequenceGenerator extends SequenceStyleGenerator {
+
+    public static final String INCREMENT_SETTING_PARAM = "increment_size_setting";
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        String setting = params.getProperty(INCREMENT_SETTING_PARAM);
+        if (setting != null) {
+            Object incrementSize = serviceRegistry.getService(ConfigurationService.class)
+                    .getSettings()
+                    .get(setting);
+            if (incrementSize != null) {
+                params.setProperty(INCREMENT_PARAM, incrementSize.toString());
+            }
+        }
+        super.configure(type, params, serviceRegistry);
+    }
+}
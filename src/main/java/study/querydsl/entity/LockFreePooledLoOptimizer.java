@@ -0,0 +1,86 @@
+package study.querydsl.entity;
+
+import org.hibernate.id.IntegralDataTypeHolder;
+import org.hibernate.id.enhanced.AccessCallback;
+import org.hibernate.id.enhanced.Optimizer;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * pooled-lo 방식의 식별자 optimizer
+ * 시퀀스에서 읽은 값(lo)부터 incrementSize 개의 식별자를 메모리에서 나눠준다.
+ * Hibernate 기본 pooled-lo optimizer 는 generate 전체가 synchronized 이지만,
+ * 여기서는 블록 안의 값은 CAS 로 나눠주고 새 블록을 가져올 때만 락을 잡는다.
+ */
+public class LockFreePooledLoOptimizer implements Optimizer {
+
+    private final Class<?> returnClass;
+    private final int incrementSize;
+    private volatile Block block;
+    private volatile IntegralDataTypeHolder lastSourceValue;
+
+    public LockFreePooledLoOptimizer(Class returnClass, int incrementSize) {
+        if (incrementSize < 1) {
+            throw new IllegalArgumentException("increment size must be positive: " + incrementSize);
+        }
+        this.returnClass = returnClass;
+        this.incrementSize = incrementSize;
+    }
+
+    @Override
+    public Serializable generate(AccessCallback callback) {
+        while (true) {
+            Block current = block;
+            if (current != null) {
+                long value = current.next.getAndIncrement();
+                if (value < current.upperBound) {
+                    return toIdentifier(value);
+                }
+            }
+            synchronized (this) {
+                if (current == block) {
+                    IntegralDataTypeHolder lo = callback.getNextValue();
+                    lastSourceValue = lo;
+                    long loValue = lo.makeValue().longValue();
+                    block = new Block(loValue, loValue + incrementSize);
+                }
+            }
+        }
+    }
+
+    @Override
+    public IntegralDataTypeHolder getLastSourceValue() {
+        return lastSourceValue;
+    }
+
+    @Override
+    public int getIncrementSize() {
+        return incrementSize;
+    }
+
+    @Override
+    public boolean applyIncrementSizeToSourceValues() {
+        return true;
+    }
+
+    private Serializable toIdentifier(long value) {
+        if (returnClass == Integer.class || returnClass == int.class) {
+            return (int) value;
+        }
+        if (returnClass == Short.class || returnClass == short.class) {
+            return (short) value;
+        }
+        return value;
+    }
+
+    private static class Block {
+        private final AtomicLong next;
+        private final long upperBound;
+
+        private Block(long lo, long upperBound) {
+            this.next = new AtomicLong(lo);
+            this.upperBound = upperBound;
+        }
+    }
+}
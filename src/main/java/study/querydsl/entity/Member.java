@@ -4,16 +4,36 @@ import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import javax.persistence.*;
 
+/**
+ * 검색 조건(username 일치, age 범위, team + age 범위)별 인덱스
+ * team.name 일치는 Team 의 natural id 유니크 제약 인덱스를 사용한다.
+ */
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_member_username", columnList = "username"),
+        @Index(name = "idx_member_age", columnList = "age"),
+        @Index(name = "idx_member_team_age", columnList = "team_id, age")
+})
 @Getter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString
 public class Member {
 
-    @Id @GeneratedValue
+    @Id
+    @GeneratedValue(generator = "member_seq")
+    @GenericGenerator(name = "member_seq", strategy = "study.querydsl.entity.ConfigurableSequenceGenerator",
+            parameters = {
+                    @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "member_seq"),
+                    @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = "50"),
+                    @Parameter(name = SequenceStyleGenerator.OPT_PARAM, value = "study.querydsl.entity.LockFreePooledLoOptimizer"),
+                    @Parameter(name = ConfigurableSequenceGenerator.INCREMENT_SETTING_PARAM, value = "querydsl.id.member.allocation-size")
+            })
     @Column(name = "member_id")
     private Long id;
     private String username;
@@ -41,7 +61,20 @@ public class Member {
         this.team = team;
     }
 
-    private void changeTeam(Team team) {
+    /**
+     * Team.members 컬렉션을 건드리지 않고 팀만 지정한다
+     * 대량 적재처럼 팀의 회원 목록을 메모리에 올릴 필요가 없을 때 사용한다.
+     */
+    public static Member ofTeamReference(String username, int age, Team team) {
+        Member member = new Member(username, age);
+        member.team = team;
+        return member;
+    }
+
+    /**
+     * 예전 팀의 members 에서는 빼지 않는다. Team.members 가 orphanRemoval 이라 빼면 flush 때 회원이 삭제된다
+     */
+    public void changeTeam(Team team) {
         this.team = team;
         team.getMembers().add(this);
     }
@@ -4,20 +4,46 @@ import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * 팀은 개수가 적고 거의 바뀌지 않지만 거의 모든 회원 조회가 참조하므로 2차 캐시에 올린다
+ * 엔티티 변경은 READ_WRITE 전략이, 벌크 update/delete 는 Hibernate 가 리전을 비워서 반영한다.
+ * 팀 이름은 유일하다. 스키마의 유니크 제약(uk_team_name)이 보장하고, 회원 import 는 이 제약 위반으로 다른 서버가 먼저 만든 팀을 알아챈다.
+ * name 을 자연 키(@NaturalId)로 두는 것은 이 제약을 전제로 이름 조회를 NaturalIdCache 로 캐시하기 위해서다. 이름은 changeName 으로 바꿀 수 있다.
+ */
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_team_name", columnNames = "name"))
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@NaturalIdCache
 @Getter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString
 public class Team {
 
-    @Id @GeneratedValue
+    @Id
+    @GeneratedValue(generator = "team_seq")
+    @GenericGenerator(name = "team_seq", strategy = "study.querydsl.entity.ConfigurableSequenceGenerator",
+            parameters = {
+                    @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "team_seq"),
+                    @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = "50"),
+                    @Parameter(name = SequenceStyleGenerator.OPT_PARAM, value = "study.querydsl.entity.LockFreePooledLoOptimizer"),
+                    @Parameter(name = ConfigurableSequenceGenerator.INCREMENT_SETTING_PARAM, value = "querydsl.id.team.allocation-size")
+            })
     @Column(name = "team_id")
     private Long id;
+
+    @NaturalId(mutable = true)
     private String name;
 
     @OneToMany(mappedBy = "team", orphanRemoval = true)
@@ -27,4 +53,8 @@ public class Team {
     public Team(String name) {
         this.name = name;
     }
+
+    public void changeName(String name) {
+        this.name = name;
+    }
 }
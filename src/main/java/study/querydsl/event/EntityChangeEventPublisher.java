@@ -0,0 +1,169 @@
+package study.querydsl.event;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.ActionQueue;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Hibernate 의 post-commit 이벤트를 EntityChangedEvent 로 바꿔서 발행한다
+ * 커밋이 끝난 뒤에만 호출되기 때문에 롤백된 변경이 캐시에 반영되는 일은 없다.
+ * <p>
+ * 엔티티를 바꾼 트랜잭션에는 커밋 직전에 순번(commitSequence)을 매겨 이벤트에 싣는다.
+ * 순번을 받고 DB 커밋이 끝날 때까지는 commitGate 의 읽기 락을 잡으므로,
+ * snapshotPoint 가 쓰기 락 안에서 읽은 순번 이하의 트랜잭션은 모두 그 스냅샷보다 먼저 커밋됐고, 큰 트랜잭션은 모두 나중에 커밋된다.
+ */
+@Component
+@RequiredArgsConstructor
+public class EntityChangeEventPublisher implements PostCommitInsertEventListener,
+        PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+    private final transient EntityManagerFactory entityManagerFactory;
+    private final transient ApplicationEventPublisher publisher;
+
+    private final transient ReadWriteLock commitGate = new ReentrantReadWriteLock();
+    private final transient AtomicLong commitSequence = new AtomicLong();
+    private final transient ThreadLocal<Long> currentCommit = ThreadLocal.withInitial(() -> 0L);
+    private final transient Set<EventSource> sequencedSessions = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+        CommitSequencer sequencer = new CommitSequencer();
+        registry.appendListeners(EventType.POST_INSERT, sequencer);
+        registry.appendListeners(EventType.POST_UPDATE, sequencer);
+        registry.appendListeners(EventType.POST_DELETE, sequencer);
+    }
+
+    /**
+     * 커밋 중인 트랜잭션이 없는 시점에 snapshot 을 실행하고, 그때까지 매긴 마지막 커밋 순번을 돌려준다
+     * snapshot 은 REPEATABLE_READ 트랜잭션의 첫 조회처럼 스냅샷 시점을 정하는 가벼운 작업이어야 한다. 그동안 다른 커밋은 기다린다.
+     */
+    public long snapshotPoint(Runnable snapshot) {
+        commitGate.writeLock().lock();
+        try {
+            snapshot.run();
+            return commitSequence.get();
+        } finally {
+            commitGate.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        publisher.publishEvent(new EntityChangedEvent(EntityChangedEvent.Type.INSERT,
+                event.getEntity().getClass(), event.getEntity(),
+                event.getPersister().getPropertyNames(), null, event.getState(), currentCommit.get()));
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        publisher.publishEvent(new EntityChangedEvent(EntityChangedEvent.Type.UPDATE,
+                event.getEntity().getClass(), event.getEntity(),
+                event.getPersister().getPropertyNames(), event.getOldState(), event.getState(), currentCommit.get()));
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        publisher.publishEvent(new EntityChangedEvent(EntityChangedEvent.Type.DELETE,
+                event.getEntity().getClass(), event.getEntity(),
+                event.getPersister().getPropertyNames(), event.getDeletedState(), null, currentCommit.get()));
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return true;
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return true;
+    }
+
+    /**
+     * flush 때 엔티티를 바꾼 세션에 커밋 전후 작업을 한번만 등록한다
+     * 커밋 후 작업은 엔티티 액션보다 먼저 등록되므로 post-commit 이벤트 발행 전에 락을 푼다. 순번은 같은 스레드의 currentCommit 에 남는다.
+     */
+    private class CommitSequencer implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+        @Override
+        public void onPostInsert(PostInsertEvent event) {
+            sequence(event.getSession());
+        }
+
+        @Override
+        public void onPostUpdate(PostUpdateEvent event) {
+            sequence(event.getSession());
+        }
+
+        @Override
+        public void onPostDelete(PostDeleteEvent event) {
+            sequence(event.getSession());
+        }
+
+        private void sequence(EventSource session) {
+            if (!sequencedSessions.add(session)) {
+                return;
+            }
+            boolean[] locked = new boolean[1];
+            ActionQueue actionQueue = session.getActionQueue();
+            actionQueue.registerProcess((BeforeTransactionCompletionProcess) s -> {
+                commitGate.readLock().lock();
+                locked[0] = true;
+                currentCommit.set(commitSequence.incrementAndGet());
+            });
+            actionQueue.registerProcess((AfterTransactionCompletionProcess) (success, s) -> {
+                sequencedSessions.remove(session);
+                if (locked[0]) {
+                    commitGate.readLock().unlock();
+                }
+            });
+        }
+
+        @Override
+        public boolean requiresPostCommitHanding(EntityPersister persister) {
+            return false;
+        }
+    }
+}
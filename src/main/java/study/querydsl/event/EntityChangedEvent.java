@@ -0,0 +1,73 @@
+package study.querydsl.event;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 커밋된 엔티티 변경을 알리는 애플리케이션 이벤트
+ * 캐시, 통계처럼 DB 내용을 메모리에 들고 있는 컴포넌트들이 이 이벤트로 자신을 갱신한다.
+ * 벌크 연산(update, delete 쿼리)은 어떤 row 가 바뀌었는지 알 수 없으므로 BULK 로 한번에 알린다.
+ * commitSequence 는 커밋 순서(EntityChangeEventPublisher 가 커밋 직전에 매긴다)다. 0 이면 순서를 모르는 이벤트다.
+ */
+@Getter
+@ToString(onlyExplicitlyIncluded = true)
+public class EntityChangedEvent {
+
+    public enum Type {
+        INSERT, UPDATE, DELETE, BULK
+    }
+
+    @ToString.Include
+    private final Type type;
+    @ToString.Include
+    private final Class<?> entityClass;
+    private final Object entity;
+    private final String[] propertyNames;
+    private final Object[] oldState;
+    private final Object[] state;
+    private final long commitSequence;
+
+    public EntityChangedEvent(Type type, Class<?> entityClass, Object entity,
+                              String[] propertyNames, Object[] oldState, Object[] state) {
+        this(type, entityClass, entity, propertyNames, oldState, state, 0);
+    }
+
+    public EntityChangedEvent(Type type, Class<?> entityClass, Object entity,
+                              String[] propertyNames, Object[] oldState, Object[] state, long commitSequence) {
+        this.type = type;
+        this.entityClass = entityClass;
+        this.entity = entity;
+        this.propertyNames = propertyNames;
+        this.oldState = oldState;
+        this.state = state;
+        this.commitSequence = commitSequence;
+    }
+
+    public static EntityChangedEvent bulk(Class<?> entityClass) {
+        return new EntityChangedEvent(Type.BULK, entityClass, null, null, null, null);
+    }
+
+    public boolean isFor(Class<?> type) {
+        return type.isAssignableFrom(entityClass);
+    }
+
+    public Object getOldValue(String propertyName) {
+        return valueOf(oldState, propertyName);
+    }
+
+    public Object getNewValue(String propertyName) {
+        return valueOf(state, propertyName);
+    }
+
+    private Object valueOf(Object[] values, String propertyName) {
+        if (values == null || propertyNames == null) {
+            return null;
+        }
+        for (int i = 0; i < propertyNames.length; i++) {
+            if (propertyNames[i].equals(propertyName)) {
+                return values[i];
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,140 @@
+package study.querydsl.monitoring;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * p6spy 로 실행되는 select 문을 작업 단위(HTTP 요청 또는 트랜잭션)별로 세서 N+1 을 찾아낸다
+ * 파라미터 값만 다르고 모양이 같은 select 가 threshold 번을 넘게 실행되면, 그 시점의 스택 트레이스와 함께
+ * 로그를 남기거나(LOG, WARN) 예외를 던진다(THROW, 테스트용).
+ * 지연 로딩(member.team 등)이 어디서 일어났는지는 스택 트레이스로 확인한다.
+ */
+@Slf4j
+@Component
+public class NPlusOneDetector extends SimpleJdbcEventListener {
+
+    public enum Mode {
+        LOG, WARN, THROW
+    }
+
+    private static final Pattern COMMENT = Pattern.compile("/\\*.*?\\*/", Pattern.DOTALL);
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final ThreadLocal<UnitOfWork> current = new ThreadLocal<>();
+    private final boolean enabled;
+    private final int threshold;
+    private final Mode mode;
+
+    public NPlusOneDetector(@Value("${querydsl.n-plus-one.enabled:true}") boolean enabled,
+                            @Value("${querydsl.n-plus-one.threshold:5}") int threshold,
+                            @Value("${querydsl.n-plus-one.mode:WARN}") Mode mode) {
+        this.enabled = enabled;
+        this.threshold = threshold;
+        this.mode = mode;
+    }
+
+    /**
+     * 작업 단위를 시작한다. 이미 진행 중이면 false 를 반환하고 바깥 작업 단위에 합쳐진다.
+     */
+    public boolean begin() {
+        if (current.get() != null) {
+            return false;
+        }
+        current.set(new UnitOfWork());
+        return true;
+    }
+
+    public void end() {
+        current.remove();
+    }
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        if (enabled && e == null) {
+            record(statementInformation.getSql());
+        }
+    }
+
+    void record(String sql) {
+        if (sql == null) {
+            return;
+        }
+        String shape = normalize(sql);
+        if (!shape.startsWith("select")) {
+            return;
+        }
+        UnitOfWork unitOfWork = currentUnitOfWork();
+        if (unitOfWork == null) {
+            return;
+        }
+        int count = unitOfWork.increment(shape);
+        if (count == threshold + 1) {
+            report(shape, count);
+        }
+    }
+
+    static String normalize(String sql) {
+        String normalized = COMMENT.matcher(sql).replaceAll(" ");
+        normalized = STRING_LITERAL.matcher(normalized).replaceAll("?");
+        normalized = NUMBER_LITERAL.matcher(normalized).replaceAll("?");
+        normalized = IN_LIST.matcher(normalized).replaceAll("(?)");
+        normalized = WHITESPACE.matcher(normalized).replaceAll(" ");
+        return normalized.trim().toLowerCase();
+    }
+
+    /**
+     * HTTP 요청 밖(배치, 테스트)에서는 트랜잭션을 작업 단위로 삼는다
+     */
+    private UnitOfWork currentUnitOfWork() {
+        UnitOfWork unitOfWork = current.get();
+        if (unitOfWork != null || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return unitOfWork;
+        }
+        UnitOfWork transactional = new UnitOfWork();
+        current.set(transactional);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (current.get() == transactional) {
+                    current.remove();
+                }
+            }
+        });
+        return transactional;
+    }
+
+    private void report(String shape, int count) {
+        NPlusOneException detected = new NPlusOneException(
+                "N+1 suspected: same statement executed more than " + threshold + " times in one unit of work: " + shape);
+        switch (mode) {
+            case THROW:
+                throw detected;
+            case WARN:
+                log.warn(detected.getMessage(), detected);
+                break;
+            default:
+                log.info(detected.getMessage(), detected);
+        }
+    }
+
+    private static class UnitOfWork {
+        private final Map<String, Integer> counts = new HashMap<>();
+
+        private int increment(String shape) {
+            return counts.merge(shape, 1, Integer::sum);
+        }
+    }
+}
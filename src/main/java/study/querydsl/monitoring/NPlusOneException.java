@@ -0,0 +1,12 @@
+package study.querydsl.monitoring;
+
+/**
+ * 하나의 작업 단위 안에서 같은 모양의 select 가 너무 많이 실행됐을 때 발생한다
+ * 스택 트레이스가 곧 N+1 을 일으킨 호출 위치다.
+ */
+public class NPlusOneException extends RuntimeException {
+
+    public NPlusOneException(String message) {
+        super(message);
+    }
+}
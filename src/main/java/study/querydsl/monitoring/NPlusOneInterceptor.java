@@ -0,0 +1,46 @@
+package study.querydsl.monitoring;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * HTTP 요청 하나를 N+1 감지의 작업 단위로 묶는다
+ * OSIV 로 응답을 직렬화하면서 일어나는 지연 로딩도 같은 요청에서 센다.
+ * 비동기 핸들러(CompletableFuture, StreamingResponseBody)는 요청 스레드에서 afterCompletion 이 호출되지 않으므로
+ * afterConcurrentHandlingStarted 에서 작업 단위를 끝낸다. 결과를 쓰는 async dispatch 는 다시 preHandle 부터 새 작업 단위로 센다.
+ */
+@Component
+@RequiredArgsConstructor
+public class NPlusOneInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String STARTED = NPlusOneInterceptor.class.getName() + ".STARTED";
+
+    private final NPlusOneDetector detector;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (detector.begin()) {
+            request.setAttribute(STARTED, Boolean.TRUE);
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(STARTED) != null) {
+            detector.end();
+        }
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getAttribute(STARTED) != null) {
+            request.removeAttribute(STARTED);
+            detector.end();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package study.querydsl.repository;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * 청크 단위 벌크 연산 옵션
+ * chunkSize 는 한번에 처리할 member_id 구간의 크기이고, throttle 만큼 청크 사이에 쉰다.
+ */
+@Getter
+@Builder
+public class BulkOptions {
+
+    @Builder.Default
+    private final long chunkSize = 10_000;
+
+    @Builder.Default
+    private final Duration throttle = Duration.ZERO;
+
+    @Builder.Default
+    private final BulkProgressListener progressListener = progress -> {
+    };
+
+    public static BulkOptions defaults() {
+        return BulkOptions.builder().build();
+    }
+
+    public interface BulkProgressListener {
+        void onChunk(BulkProgress progress);
+    }
+
+    @Getter
+    public static class BulkProgress {
+        private final long chunksDone;
+        private final long chunksTotal;
+        private final long affectedRows;
+        private final long lastId;
+
+        BulkProgress(long chunksDone, long chunksTotal, long affectedRows, long lastId) {
+            this.chunksDone = chunksDone;
+            this.chunksTotal = chunksTotal;
+            this.affectedRows = affectedRows;
+            this.lastId = lastId;
+        }
+    }
+}
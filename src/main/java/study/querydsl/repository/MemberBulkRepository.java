@@ -0,0 +1,162 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.event.EntityChangedEvent;
+
+import javax.persistence.EntityManager;
+import java.util.function.Consumer;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * member_id 구간으로 나눠서 실행하는 벌크 update/delete
+ * 하나의 거대한 update 문 대신 chunkSize 구간씩 나눠 실행하고, 트랜잭션 밖에서 호출하면 청크마다 커밋한다.
+ * 다음 구간은 직전 구간 뒤의 첫 대상 id 부터 시작하므로 대상이 없는 구간은 실행하지 않는다.
+ * 이미 트랜잭션 안이라면 그 트랜잭션에 참여하고, 끝나면 영속성 컨텍스트를 비워서 오래된 Member 를 읽지 않게 한다.
+ * 2차 캐시의 Member 리전도 비운다. 커밋되면 EntityChangedEvent(BULK)를 발행한다 (청크마다 커밋하면 청크마다, 참여했다면 그 트랜잭션의 커밋 후 한번).
+ * 벌크 연산은 영속성 컨텍스트를 거치지 않아 post-commit 리스너가 호출되지 않으므로, Member 벌크 연산은 반드시 여기를 거친다.
+ * where 조건은 member 의 컬럼만 사용해야 한다 (벌크 연산에서는 조인을 쓸 수 없다).
+ */
+@Slf4j
+@Repository
+public class MemberBulkRepository {
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher publisher;
+
+    public MemberBulkRepository(EntityManager em, PlatformTransactionManager transactionManager,
+                                ApplicationEventPublisher publisher) {
+        this.em = em;
+        this.queryFactory = new JPAQueryFactory(em);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.publisher = publisher;
+    }
+
+    public long updateInChunks(Predicate where, Consumer<JPAUpdateClause> assignments, BulkOptions options) {
+        return inChunks(where, options, (from, to) -> {
+            JPAUpdateClause update = queryFactory
+                    .update(member)
+                    .where(where, member.id.between(from, to));
+            assignments.accept(update);
+            return update.execute();
+        });
+    }
+
+    public long deleteInChunks(Predicate where, BulkOptions options) {
+        return inChunks(where, options, (from, to) -> queryFactory
+                .delete(member)
+                .where(where, member.id.between(from, to))
+                .execute());
+    }
+
+    private long inChunks(Predicate where, BulkOptions options, ChunkStatement statement) {
+        Tuple range = queryFactory
+                .select(member.id.min(), member.id.max())
+                .from(member)
+                .where(where)
+                .fetchOne();
+        Long minId = range == null ? null : range.get(member.id.min());
+        Long maxId = range == null ? null : range.get(member.id.max());
+        if (minId == null || maxId == null) {
+            return 0;
+        }
+
+        boolean joined = TransactionSynchronizationManager.isActualTransactionActive();
+        long chunkSize = options.getChunkSize();
+        // 구간 수의 상한. 대상이 없는 구간은 건너뛰므로 더 일찍 끝날 수 있다
+        long chunksTotal = (maxId - minId) / chunkSize + 1;
+        long affected = 0;
+        long chunksDone = 0;
+        Long from = minId;
+        while (from != null) {
+            long chunkFrom = from;
+            long chunkTo = Math.min(maxId, from + chunkSize - 1);
+            Long rows = transactionTemplate.execute(status -> {
+                long chunkRows = statement.execute(chunkFrom, chunkTo);
+                if (!joined && chunkRows > 0) {
+                    publishAfterCommit();
+                }
+                return chunkRows;
+            });
+            affected += rows == null ? 0 : rows;
+            chunksDone++;
+            options.getProgressListener().onChunk(new BulkOptions.BulkProgress(chunksDone, chunksTotal, affected, chunkTo));
+            log.debug("bulk chunk {}/{} done, {} rows affected so far", chunksDone, chunksTotal, affected);
+            from = chunkTo < maxId ? nextId(where, chunkTo, maxId) : null;
+            throttle(options, from != null);
+        }
+
+        afterBulk(joined, affected);
+        return affected;
+    }
+
+    /**
+     * afterId 다음의 대상 id. id 가 듬성듬성해도 빈 구간마다 커밋하고 쉬지 않도록 다음 청크는 여기서 시작한다
+     */
+    private Long nextId(Predicate where, long afterId, long maxId) {
+        return queryFactory
+                .select(member.id)
+                .from(member)
+                .where(where, member.id.gt(afterId), member.id.loe(maxId))
+                .orderBy(member.id.asc())
+                .fetchFirst();
+    }
+
+    private void afterBulk(boolean joined, long affected) {
+        em.getEntityManagerFactory().getCache().evict(Member.class);
+        if (!joined) {
+            return;
+        }
+        if (affected > 0) {
+            publishAfterCommit();
+        }
+        // 벌크 연산은 영속성 컨텍스트를 거치지 않으므로, 같은 트랜잭션에서 이후에 읽는 Member 가 DB 값을 보도록 비운다
+        em.flush();
+        em.clear();
+    }
+
+    /**
+     * 롤백되면 발행하지 않는다
+     */
+    private void publishAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publisher.publishEvent(EntityChangedEvent.bulk(Member.class));
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publisher.publishEvent(EntityChangedEvent.bulk(Member.class));
+            }
+        });
+    }
+
+    private static void throttle(BulkOptions options, boolean hasNext) {
+        if (!hasNext || options.getThrottle().isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(options.getThrottle().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("bulk operation interrupted", e);
+        }
+    }
+
+    private interface ChunkStatement {
+        long execute(long from, long to);
+    }
+}
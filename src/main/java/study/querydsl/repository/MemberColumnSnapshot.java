@@ -0,0 +1,189 @@
+package study.querydsl.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.EntityChangedEvent;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * 회원 분석용 컬럼 저장소(MemberColumnStore)를 채우고 최신으로 유지한다
+ * 애플리케이션이 뜨면 id, age, team id, username 네 컬럼만 id 순으로 스트리밍해서 적재한다. 엔티티는 만들지 않는다.
+ * 이후에는 커밋된 Member/Team 변경 이벤트로 바로 갱신하고, 벌크 연산(BULK 이벤트)이 있으면 다시 적재한다.
+ * 적재하는 동안 들어온 변경은 모아뒀다가 새 저장소에 다시 적용한다. upsert/remove 라서 두 번 적용돼도 결과는 같다.
+ * 적재하는 동안 벌크 연산이 커밋되면 읽은 내용을 믿을 수 없으므로 새 저장소를 버리고 다시 적재한다.
+ * username 부분 일치 조건은 username 3-gram 색인(MemberUsernameIndex)의 후보로 좁힌다.
+ * 메모리를 많이 쓰므로(username 이 모두 다른 회원 1000만 명에 컬럼 240MB + username 사전 약 1.1GB) 기본은 꺼져 있다.
+ */
+@Slf4j
+@Component
+public class MemberColumnSnapshot {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final MemberUsernameIndex usernameIndex;
+    private final boolean enabled;
+    private final int segmentSize;
+    private final int fetchSize;
+    private final ForkJoinPool pool;
+    private final ExecutorService loadExecutor =
+            Executors.newSingleThreadExecutor(new CustomizableThreadFactory("column-snapshot-"));
+    private final AtomicBoolean loadScheduled = new AtomicBoolean();
+
+    private final Object lock = new Object();
+    private volatile MemberColumnStore store;
+    private List<EntityChangedEvent> pending;
+    private boolean bulkDuringLoad;
+
+    public MemberColumnSnapshot(EntityManagerFactory entityManagerFactory,
+                                MemberUsernameIndex usernameIndex,
+                                @Value("${querydsl.column-snapshot.enabled:false}") boolean enabled,
+                                @Value("${querydsl.column-snapshot.segment-size:65536}") int segmentSize,
+                                @Value("${querydsl.column-snapshot.fetch-size:10000}") int fetchSize,
+                                @Value("${querydsl.column-snapshot.parallelism:0}") int parallelism) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.usernameIndex = usernameIndex;
+        this.enabled = enabled;
+        this.segmentSize = segmentSize;
+        this.fetchSize = fetchSize;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * 적재가 끝난 저장소. 꺼져 있거나 아직 적재 중이면 null
+     */
+    public MemberColumnStore current() {
+        return store;
+    }
+
+    public boolean isReady() {
+        return store != null;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        scheduleLoad();
+    }
+
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        if (!enabled || !(event.isFor(Member.class) || event.isFor(Team.class))) {
+            return;
+        }
+        if (event.getType() == EntityChangedEvent.Type.BULK) {
+            synchronized (lock) {
+                store = null;
+                bulkDuringLoad = pending != null;
+            }
+            scheduleLoad();
+            return;
+        }
+        synchronized (lock) {
+            if (pending != null) {
+                pending.add(event);
+            }
+            if (store != null) {
+                apply(store, event);
+            }
+        }
+    }
+
+    public void scheduleLoad() {
+        if (enabled && loadScheduled.compareAndSet(false, true)) {
+            loadExecutor.execute(this::load);
+        }
+    }
+
+    void load() {
+        loadScheduled.set(false);
+        synchronized (lock) {
+            pending = new ArrayList<>();
+            bulkDuringLoad = false;
+        }
+        long start = System.nanoTime();
+        MemberColumnStore loaded = new MemberColumnStore(segmentSize, pool, usernameIndex::candidates);
+        EntityManager em = entityManagerFactory.createEntityManager();
+        try {
+            em.unwrap(Session.class).setDefaultReadOnly(true);
+            em.getTransaction().begin();
+            try {
+                em.createQuery("select t.id, t.name from Team t", Object[].class)
+                        .getResultList()
+                        .forEach(row -> loaded.teamNamed((Long) row[0], (String) row[1]));
+                try (Stream<Object[]> rows = em.createQuery(
+                                "select m.id, m.age, t.id, m.username from Member m left join m.team t order by m.id",
+                                Object[].class)
+                        .setHint(QueryHints.FETCH_SIZE, fetchSize)
+                        .getResultStream()) {
+                    rows.forEach(row -> loaded.upsert((Long) row[0], (Integer) row[1], (Long) row[2], (String) row[3]));
+                }
+            } finally {
+                em.getTransaction().rollback();
+            }
+        } catch (RuntimeException e) {
+            log.warn("member column snapshot load failed", e);
+            synchronized (lock) {
+                pending = null;
+            }
+            return;
+        } finally {
+            em.close();
+        }
+
+        synchronized (lock) {
+            boolean stale = bulkDuringLoad;
+            pending.forEach(event -> apply(loaded, event));
+            pending = null;
+            if (stale) {
+                // BULK 이벤트가 다음 적재를 이미 예약했다
+                log.info("member column snapshot discarded, a bulk operation committed during the load");
+                return;
+            }
+            store = loaded;
+        }
+        log.info("member column snapshot loaded: {} members in {} segments, ~{} bytes in {} ms", loaded.size(),
+                loaded.segmentCount(), loaded.estimatedBytes(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static void apply(MemberColumnStore target, EntityChangedEvent event) {
+        if (event.isFor(Team.class)) {
+            Team team = (Team) event.getEntity();
+            if (event.getType() == EntityChangedEvent.Type.DELETE) {
+                target.teamRemoved(team.getId());
+            } else {
+                target.teamNamed(team.getId(), (String) event.getNewValue("name"));
+            }
+            return;
+        }
+        Member member = (Member) event.getEntity();
+        if (event.getType() == EntityChangedEvent.Type.DELETE) {
+            target.remove(member.getId());
+            return;
+        }
+        Team team = (Team) event.getNewValue("team");
+        target.upsert(member.getId(), (Integer) event.getNewValue("age"),
+                team == null ? null : team.getId(), (String) event.getNewValue("username"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        loadExecutor.shutdownNow();
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,588 @@
+package study.querydsl.repository;
+
+import study.querydsl.dto.MemberSearchKey;
+import study.querydsl.dto.TeamStatisticsDto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+/**
+ * 회원 분석용 컬럼 저장소
+ * 회원 한 명을 엔티티 대신 id(long[]), age(int[]), team id(long[]), username 사전 코드(int[]) 네 배열의 같은 위치에 둔다.
+ * - 배열은 id 순으로 정렬된 segment(기본 64K 행) 단위로 나뉘고, 집계는 segment 마다 ForkJoinPool 에서 나눠 실행한 뒤 합친다.
+ * - username 은 사전(문자열 -> 코드)으로 바꿔 저장한다. username 조건은 일치하는 코드 집합(BitSet)으로 바꾸고 행마다 코드만 비교한다.
+ *   username 은 사전에서 바로 찾는다. 부분 일치/앞부분 일치는 usernameCandidates(username 3-gram 색인)가 돌려준 후보 회원의
+ *   코드만 확인하고, 색인을 쓸 수 없을 때만 사전 전체를 훑는다.
+ *   색인과 이 저장소는 같은 이벤트로 따로 갱신되므로, 이름이 바뀐 직후에는 잠깐 새 이름으로 찾지 못할 수 있다.
+ * - 추가/수정/삭제는 id 로 segment 를 이분 탐색해서 해당 segment 만 고친다. segment 가 기준의 2배가 되면 반으로 나눈다.
+ * 사전의 코드는 회원이 지워져도 회수하지 않는다. 다시 적재할 때 정리된다.
+ * username 이 모두 다르면 사전이 컬럼보다 크다 (estimatedBytes 참고).
+ */
+public class MemberColumnStore {
+
+    public static final long NO_TEAM = 0L;
+    private static final int NO_USERNAME = -1;
+    private static final int MAX_BUCKETS = 1 << 20;
+    // HashMap.Node 32 + 해시 테이블 칸 8
+    private static final long ENTRY_BYTES = 40;
+
+    private final int segmentSize;
+    private final ForkJoinPool pool;
+    private final Function<MemberSearchKey, List<Long>> usernameCandidates;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final List<Segment> segments = new ArrayList<>();
+    private final Map<String, Integer> usernameCodes = new HashMap<>();
+    private final List<String> usernames = new ArrayList<>();
+    private long dictionaryBytes;
+    private final Map<Long, String> teamNames = new HashMap<>();
+    private int size;
+    private int minAge = Integer.MAX_VALUE;
+    private int maxAge = Integer.MIN_VALUE;
+
+    public MemberColumnStore(int segmentSize, ForkJoinPool pool) {
+        this(segmentSize, pool, key -> null);
+    }
+
+    /**
+     * usernameCandidates : 부분 일치/앞부분 일치 조건에 맞을 수 있는 회원 id. 알 수 없으면 null
+     */
+    public MemberColumnStore(int segmentSize, ForkJoinPool pool,
+                             Function<MemberSearchKey, List<Long>> usernameCandidates) {
+        this.segmentSize = segmentSize;
+        this.pool = pool;
+        this.usernameCandidates = usernameCandidates;
+    }
+
+    /**
+     * 같은 id 가 있으면 값을 바꾸고 없으면 id 순서에 맞는 자리에 넣는다
+     * id 순으로 적재하면 항상 마지막 segment 끝에 붙는다.
+     */
+    public void upsert(long id, int age, Long teamId, String username) {
+        lock.writeLock().lock();
+        try {
+            long team = teamId == null ? NO_TEAM : teamId;
+            int code = encode(username);
+            minAge = Math.min(minAge, age);
+            maxAge = Math.max(maxAge, age);
+
+            Segment tail = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+            if (tail == null || tail.lastId() < id) {
+                if (tail == null || tail.size >= segmentSize) {
+                    tail = new Segment(segmentSize);
+                    segments.add(tail);
+                }
+                tail.insertAt(tail.size, id, age, team, code);
+                size++;
+                return;
+            }
+
+            int segmentIndex = segmentOf(id);
+            Segment segment = segments.get(segmentIndex);
+            int row = segment.indexOf(id);
+            if (row >= 0) {
+                segment.set(row, age, team, code);
+                return;
+            }
+            segment.insertAt(-row - 1, id, age, team, code);
+            size++;
+            if (segment.size >= segmentSize * 2) {
+                segments.add(segmentIndex + 1, segment.splitUpperHalf());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            if (segments.isEmpty()) {
+                return;
+            }
+            int segmentIndex = segmentOf(id);
+            Segment segment = segments.get(segmentIndex);
+            int row = segment.indexOf(id);
+            if (row < 0) {
+                return;
+            }
+            segment.removeAt(row);
+            size--;
+            if (segment.size == 0) {
+                segments.remove(segmentIndex);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void teamNamed(long teamId, String name) {
+        lock.writeLock().lock();
+        try {
+            teamNames.put(teamId, name);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void teamRemoved(long teamId) {
+        lock.writeLock().lock();
+        try {
+            teamNames.remove(teamId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long count(MemberSearchKey key) {
+        return aggregate(key, (segment, filter) -> {
+            long count = 0;
+            for (int i = 0; i < segment.size; i++) {
+                if (filter.matches(segment, i)) {
+                    count++;
+                }
+            }
+            return count;
+        }, Long::sum, 0L);
+    }
+
+    /**
+     * 나이를 bucketWidth 단위로 나눈 구간별 회원 수 (구간 시작 나이 -> 회원 수, 회원이 있는 구간만)
+     */
+    public Map<Integer, Long> ageHistogram(MemberSearchKey key, int bucketWidth) {
+        if (bucketWidth < 1) {
+            throw new IllegalArgumentException("bucketWidth must be positive: " + bucketWidth);
+        }
+        lock.readLock().lock();
+        try {
+            if (size == 0) {
+                return new LinkedHashMap<>();
+            }
+            int base = Math.floorDiv(minAge, bucketWidth) * bucketWidth;
+            long buckets = ((long) maxAge - base) / bucketWidth + 1;
+            if (buckets > MAX_BUCKETS) {
+                throw new IllegalArgumentException("too many buckets for age range " + minAge + " ~ " + maxAge
+                        + ", use a wider bucketWidth than " + bucketWidth);
+            }
+            long[] counts = aggregateLocked(key, (segment, filter) -> {
+                long[] partial = new long[(int) buckets];
+                for (int i = 0; i < segment.size; i++) {
+                    if (filter.matches(segment, i)) {
+                        partial[(segment.ages[i] - base) / bucketWidth]++;
+                    }
+                }
+                return partial;
+            }, MemberColumnStore::addCounts, new long[(int) buckets]);
+
+            Map<Integer, Long> histogram = new LinkedHashMap<>();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    histogram.put(base + i * bucketWidth, counts[i]);
+                }
+            }
+            return histogram;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 나이 백분위수 (0 ~ 100, nearest-rank). 1살 단위 histogram 을 누적해서 구하므로 정확한 값이다
+     */
+    public Map<Double, Integer> agePercentiles(MemberSearchKey key, double... percentiles) {
+        Map<Integer, Long> histogram = ageHistogram(key, 1);
+        long total = histogram.values().stream().mapToLong(Long::longValue).sum();
+        Map<Double, Integer> result = new LinkedHashMap<>();
+        if (total == 0) {
+            return result;
+        }
+        double[] sorted = percentiles.clone();
+        Arrays.sort(sorted);
+        int next = 0;
+        long seen = 0;
+        for (Map.Entry<Integer, Long> bucket : histogram.entrySet()) {
+            seen += bucket.getValue();
+            while (next < sorted.length && seen >= rank(sorted[next], total)) {
+                result.put(sorted[next++], bucket.getKey());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 팀별 count, sum, min, max. 팀이 없는 회원은 teamId null 로 묶는다
+     */
+    public List<TeamStatisticsDto> teamBreakdown(MemberSearchKey key) {
+        lock.readLock().lock();
+        try {
+            Map<Long, long[]> totals = aggregateLocked(key, (segment, filter) -> {
+                Map<Long, long[]> partial = new HashMap<>();
+                for (int i = 0; i < segment.size; i++) {
+                    if (filter.matches(segment, i)) {
+                        int age = segment.ages[i];
+                        long[] stats = partial.computeIfAbsent(segment.teamIds[i],
+                                t -> new long[]{0, 0, Integer.MAX_VALUE, Integer.MIN_VALUE});
+                        stats[0]++;
+                        stats[1] += age;
+                        stats[2] = Math.min(stats[2], age);
+                        stats[3] = Math.max(stats[3], age);
+                    }
+                }
+                return partial;
+            }, MemberColumnStore::mergeTeams, new HashMap<>());
+
+            List<TeamStatisticsDto> result = new ArrayList<>(totals.size());
+            totals.forEach((teamId, stats) -> result.add(new TeamStatisticsDto(
+                    teamId == NO_TEAM ? null : teamId, teamId == NO_TEAM ? null : teamNames.get(teamId),
+                    stats[0], stats[1], (int) stats[2], (int) stats[3])));
+            result.sort((a, b) -> Long.compare(b.getCount(), a.getCount()));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int segmentCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 대략적인 힙 사용량
+     * 컬럼은 행마다 id 8 + age 4 + team 8 + username 코드 4 바이트, 사전은 username 마다 문자열 + HashMap 엔트리 + Integer + 목록 칸.
+     * 13글자 username 하나에 약 110 바이트라서, username 이 모두 다른 회원 1000만 명이면 컬럼 240MB + 사전 약 1.1GB 다.
+     */
+    public long estimatedBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = 0;
+            for (Segment segment : segments) {
+                bytes += 4 * 16 + 24L * segment.ids.length;
+            }
+            for (String teamName : teamNames.values()) {
+                bytes += ENTRY_BYTES + 16 + stringBytes(teamName);
+            }
+            return bytes + dictionaryBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * String 객체 + 내용 배열 (Latin-1 이면 글자당 1바이트, 아니면 2바이트), 8바이트 정렬
+     */
+    private static long stringBytes(String value) {
+        if (value == null) {
+            return 0;
+        }
+        int width = value.chars().allMatch(c -> c < 256) ? 1 : 2;
+        return 24 + ((16L + (long) value.length() * width + 7) & ~7L);
+    }
+
+    private <R> R aggregate(MemberSearchKey key, SegmentFunction<R> function, BinaryOperator<R> combiner, R empty) {
+        lock.readLock().lock();
+        try {
+            return aggregateLocked(key, function, combiner, empty);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 읽기 락을 잡은 스레드가 작업을 나눠주고 끝날 때까지 기다리므로 집계 중에는 쓰기가 끼어들지 않는다
+     */
+    private <R> R aggregateLocked(MemberSearchKey key, SegmentFunction<R> function, BinaryOperator<R> combiner, R empty) {
+        Filter filter = compile(key);
+        if (filter == null || segments.isEmpty()) {
+            return empty;
+        }
+        Segment[] snapshot = segments.toArray(new Segment[0]);
+        return pool.invoke(new SegmentTask<>(snapshot, 0, snapshot.length,
+                segment -> function.apply(segment, filter), combiner));
+    }
+
+    /**
+     * 조건을 행 비교용 값으로 바꾼다. 일치할 수 없는 조건(없는 팀, 없는 username)이면 null
+     */
+    private Filter compile(MemberSearchKey key) {
+        long teamId = -1;
+        if (key.getTeamName() != null) {
+            teamId = teamNames.entrySet().stream()
+                    .filter(entry -> key.getTeamName().equals(entry.getValue()))
+                    .mapToLong(Map.Entry::getKey)
+                    .findFirst()
+                    .orElse(-1);
+            if (teamId == -1) {
+                return null;
+            }
+        }
+
+        BitSet codes = null;
+        if (key.getUsername() != null || key.hasUsernameFragment()) {
+            codes = usernameCodes(key);
+            if (codes.isEmpty()) {
+                return null;
+            }
+        }
+        int ageGoe = key.getAgeGoe() == null ? Integer.MIN_VALUE : key.getAgeGoe();
+        int ageLoe = key.getAgeLoe() == null ? Integer.MAX_VALUE : key.getAgeLoe();
+        return new Filter(ageGoe, ageLoe, teamId, codes);
+    }
+
+    /**
+     * username 조건에 맞는 사전 코드
+     */
+    private BitSet usernameCodes(MemberSearchKey key) {
+        BitSet codes = new BitSet();
+        if (key.getUsername() != null) {
+            Integer code = usernameCodes.get(key.getUsername());
+            if (code != null && matchesUsername(key, key.getUsername())) {
+                codes.set(code);
+            }
+            return codes;
+        }
+
+        List<Long> candidates = usernameCandidates.apply(key);
+        if (candidates == null) {
+            for (int code = 0; code < usernames.size(); code++) {
+                if (matchesUsername(key, usernames.get(code))) {
+                    codes.set(code);
+                }
+            }
+            return codes;
+        }
+        for (Long id : candidates) {
+            int code = usernameCodeOf(id);
+            if (code != NO_USERNAME && !codes.get(code) && matchesUsername(key, usernames.get(code))) {
+                codes.set(code);
+            }
+        }
+        return codes;
+    }
+
+    private int usernameCodeOf(long id) {
+        if (segments.isEmpty()) {
+            return NO_USERNAME;
+        }
+        Segment segment = segments.get(segmentOf(id));
+        int row = segment.indexOf(id);
+        return row < 0 ? NO_USERNAME : segment.usernameCodes[row];
+    }
+
+    private static boolean matchesUsername(MemberSearchKey key, String username) {
+        if (key.getUsername() != null && !key.getUsername().equals(username)) {
+            return false;
+        }
+        String lower = username.toLowerCase(Locale.ROOT);
+        if (key.getUsernameContains() != null && !lower.contains(key.getUsernameContains().toLowerCase(Locale.ROOT))) {
+            return false;
+        }
+        return key.getUsernameStartsWith() == null || lower.startsWith(key.getUsernameStartsWith().toLowerCase(Locale.ROOT));
+    }
+
+    private int encode(String username) {
+        if (username == null) {
+            return NO_USERNAME;
+        }
+        Integer code = usernameCodes.get(username);
+        if (code == null) {
+            code = usernames.size();
+            usernames.add(username);
+            usernameCodes.put(username, code);
+            // 문자열 + HashMap 엔트리 + Integer 16 + 목록 칸 8
+            dictionaryBytes += stringBytes(username) + ENTRY_BYTES + 16 + 8;
+        }
+        return code;
+    }
+
+    /**
+     * id 가 들어있거나 들어갈 segment. 첫 id 가 id 이하인 마지막 segment (없으면 첫 segment)
+     */
+    private int segmentOf(long id) {
+        int low = 0;
+        int high = segments.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (segments.get(mid).ids[0] <= id) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private static long rank(double percentile, long total) {
+        return Math.max(1, (long) Math.ceil(percentile / 100 * total));
+    }
+
+    private static long[] addCounts(long[] left, long[] right) {
+        for (int i = 0; i < left.length; i++) {
+            left[i] += right[i];
+        }
+        return left;
+    }
+
+    private static Map<Long, long[]> mergeTeams(Map<Long, long[]> left, Map<Long, long[]> right) {
+        right.forEach((teamId, stats) -> left.merge(teamId, stats, (a, b) -> {
+            a[0] += b[0];
+            a[1] += b[1];
+            a[2] = Math.min(a[2], b[2]);
+            a[3] = Math.max(a[3], b[3]);
+            return a;
+        }));
+        return left;
+    }
+
+    @FunctionalInterface
+    private interface SegmentFunction<R> {
+        R apply(Segment segment, Filter filter);
+    }
+
+    private static final class Filter {
+        private final int ageGoe;
+        private final int ageLoe;
+        private final long teamId;
+        private final BitSet usernameCodes;
+
+        private Filter(int ageGoe, int ageLoe, long teamId, BitSet usernameCodes) {
+            this.ageGoe = ageGoe;
+            this.ageLoe = ageLoe;
+            this.teamId = teamId;
+            this.usernameCodes = usernameCodes;
+        }
+
+        private boolean matches(Segment segment, int row) {
+            int age = segment.ages[row];
+            if (age < ageGoe || age > ageLoe) {
+                return false;
+            }
+            if (teamId != -1 && segment.teamIds[row] != teamId) {
+                return false;
+            }
+            if (usernameCodes == null) {
+                return true;
+            }
+            int code = segment.usernameCodes[row];
+            return code != NO_USERNAME && usernameCodes.get(code);
+        }
+    }
+
+    private static final class SegmentTask<R> extends RecursiveTask<R> {
+        private final Segment[] segments;
+        private final int from;
+        private final int to;
+        private final Function<Segment, R> function;
+        private final BinaryOperator<R> combiner;
+
+        private SegmentTask(Segment[] segments, int from, int to, Function<Segment, R> function, BinaryOperator<R> combiner) {
+            this.segments = segments;
+            this.from = from;
+            this.to = to;
+            this.function = function;
+            this.combiner = combiner;
+        }
+
+        @Override
+        protected R compute() {
+            if (to - from == 1) {
+                return function.apply(segments[from]);
+            }
+            int mid = (from + to) >>> 1;
+            SegmentTask<R> left = new SegmentTask<>(segments, from, mid, function, combiner);
+            left.fork();
+            R right = new SegmentTask<>(segments, mid, to, function, combiner).compute();
+            return combiner.apply(left.join(), right);
+        }
+    }
+
+    /**
+     * id 오름차순으로 정렬된 행 묶음
+     */
+    static final class Segment {
+        private long[] ids;
+        private int[] ages;
+        private long[] teamIds;
+        private int[] usernameCodes;
+        private int size;
+
+        private Segment(int capacity) {
+            ids = new long[capacity];
+            ages = new int[capacity];
+            teamIds = new long[capacity];
+            usernameCodes = new int[capacity];
+        }
+
+        private long lastId() {
+            return ids[size - 1];
+        }
+
+        private int indexOf(long id) {
+            return Arrays.binarySearch(ids, 0, size, id);
+        }
+
+        private void set(int row, int age, long teamId, int usernameCode) {
+            ages[row] = age;
+            teamIds[row] = teamId;
+            usernameCodes[row] = usernameCode;
+        }
+
+        private void insertAt(int row, long id, int age, long teamId, int usernameCode) {
+            if (size == ids.length) {
+                int capacity = ids.length + (ids.length >> 1) + 1;
+                ids = Arrays.copyOf(ids, capacity);
+                ages = Arrays.copyOf(ages, capacity);
+                teamIds = Arrays.copyOf(teamIds, capacity);
+                usernameCodes = Arrays.copyOf(usernameCodes, capacity);
+            }
+            int moved = size - row;
+            System.arraycopy(ids, row, ids, row + 1, moved);
+            System.arraycopy(ages, row, ages, row + 1, moved);
+            System.arraycopy(teamIds, row, teamIds, row + 1, moved);
+            System.arraycopy(usernameCodes, row, usernameCodes, row + 1, moved);
+            ids[row] = id;
+            set(row, age, teamId, usernameCode);
+            size++;
+        }
+
+        private void removeAt(int row) {
+            int moved = size - row - 1;
+            System.arraycopy(ids, row + 1, ids, row, moved);
+            System.arraycopy(ages, row + 1, ages, row, moved);
+            System.arraycopy(teamIds, row + 1, teamIds, row, moved);
+            System.arraycopy(usernameCodes, row + 1, usernameCodes, row, moved);
+            size--;
+        }
+
+        private Segment splitUpperHalf() {
+            int half = size / 2;
+            Segment upper = new Segment(Math.max(size - half, 1));
+            upper.size = size - half;
+            System.arraycopy(ids, half, upper.ids, 0, upper.size);
+            System.arraycopy(ages, half, upper.ages, 0, upper.size);
+            System.arraycopy(teamIds, half, upper.teamIds, 0, upper.size);
+            System.arraycopy(usernameCodes, half, upper.usernameCodes, 0, upper.size);
+            size = half;
+            return upper;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package study.querydsl.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchKey;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.EntityChangedEvent;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 페이징 검색의 total count 캐시
+ * 정규화된 검색 조건을 키로 count 결과를 TTL 동안 재사용한다.
+ * Member, Team 이 변경되면 캐시를 비우고, 그 전에 발급한 토큰도 받지 않는다.
+ * 토큰은 "total:발급 시각" 에 검색 조건 전체를 더해 HMAC-SHA256 으로 서명한다. 클라이언트가 total 이나 조건을 바꾸면 서명이 맞지 않는다.
+ * 서명 키는 token-secret 이다. 같은 값을 쓰는 서버끼리는 재시작 후에도 서로의 토큰을 받는다.
+ * 비어 있으면 프로세스마다 임의의 키를 만들므로 토큰은 발급한 프로세스에서만 유효하다.
+ */
+@Slf4j
+@Component
+public class MemberCountCache {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int MIN_SECRET_BYTES = 32;
+
+    private final Map<MemberSearchKey, Entry> cache = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final long ttlMillis;
+    private final SecretKeySpec tokenKey;
+    private volatile long invalidatedAt;
+
+    public MemberCountCache(@Value("${querydsl.count-cache.ttl:30s}") Duration ttl,
+                            @Value("${querydsl.count-cache.token-secret:}") String tokenSecret) {
+        this.ttlMillis = ttl.toMillis();
+        this.tokenKey = new SecretKeySpec(secretBytes(tokenSecret), HMAC_ALGORITHM);
+    }
+
+    private static byte[] secretBytes(String tokenSecret) {
+        if (tokenSecret == null || tokenSecret.isEmpty()) {
+            log.warn("querydsl.count-cache.token-secret is not set, total tokens are valid only in this process");
+            byte[] secret = new byte[MIN_SECRET_BYTES];
+            new SecureRandom().nextBytes(secret);
+            return secret;
+        }
+        byte[] secret = tokenSecret.getBytes(StandardCharsets.UTF_8);
+        if (secret.length < MIN_SECRET_BYTES) {
+            throw new IllegalArgumentException("querydsl.count-cache.token-secret must be at least "
+                    + MIN_SECRET_BYTES + " bytes");
+        }
+        return secret;
+    }
+
+    /**
+     * 유효한 토큰이 있으면 토큰의 total 을, 캐시가 살아있으면 캐시의 total 을, 둘 다 아니면 count 쿼리를 실행한다
+     */
+    public long count(MemberSearchKey key, String totalToken, LongSupplier countQuery) {
+        OptionalLong known = cached(key, totalToken);
+        if (known.isPresent()) {
+            return known.getAsLong();
+        }
+
+        long currentGeneration = generation.get();
+        long total = countQuery.getAsLong();
+        if (currentGeneration == generation.get()) {
+            cache.put(key, new Entry(total, currentGeneration, System.currentTimeMillis() + ttlMillis));
+        }
+        return total;
+    }
+
+    /**
+     * count 쿼리 없이 알 수 있는 total (유효한 토큰 또는 살아있는 캐시). 없으면 empty
+     */
+    public OptionalLong cached(MemberSearchKey key, String totalToken) {
+        long now = System.currentTimeMillis();
+        Long fromToken = readToken(key, totalToken, now);
+        if (fromToken != null) {
+            return OptionalLong.of(fromToken);
+        }
+
+        Entry entry = cache.get(key);
+        if (entry != null && entry.isAlive(generation.get(), now)) {
+            return OptionalLong.of(entry.total);
+        }
+        return OptionalLong.empty();
+    }
+
+    public String issueToken(MemberSearchKey key, long total) {
+        String payload = total + ":" + System.currentTimeMillis();
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString(payload.getBytes(StandardCharsets.UTF_8))
+                + "." + encoder.encodeToString(sign(key, payload));
+    }
+
+    public void invalidateAll() {
+        invalidatedAt = System.currentTimeMillis();
+        generation.incrementAndGet();
+        cache.clear();
+    }
+
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        if (event.isFor(Member.class) || event.isFor(Team.class)) {
+            invalidateAll();
+        }
+    }
+
+    private Long readToken(MemberSearchKey key, String totalToken, long now) {
+        if (totalToken == null) {
+            return null;
+        }
+        try {
+            int dot = totalToken.indexOf('.');
+            if (dot < 0) {
+                return null;
+            }
+            String payload = new String(Base64.getUrlDecoder().decode(totalToken.substring(0, dot)), StandardCharsets.UTF_8);
+            byte[] signature = Base64.getUrlDecoder().decode(totalToken.substring(dot + 1));
+            if (!MessageDigest.isEqual(signature, sign(key, payload))) {
+                return null;
+            }
+            String[] parts = payload.split(":");
+            if (parts.length != 2) {
+                return null;
+            }
+            // 같은 밀리초에 발급된 토큰은 무효화 전인지 알 수 없으므로 받지 않는다
+            long issuedAt = Long.parseLong(parts[1]);
+            boolean valid = issuedAt > invalidatedAt && now - issuedAt < ttlMillis;
+            return valid ? Long.parseLong(parts[0]) : null;
+        } catch (IllegalArgumentException e) {
+            // 잘못된 토큰은 무시하고 count 쿼리로 넘어간다
+            return null;
+        }
+    }
+
+    /**
+     * 정규화된 검색 조건 전체(MemberSearchKey.toString)와 payload 의 서명
+     */
+    private byte[] sign(MemberSearchKey key, String payload) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(tokenKey);
+            return mac.doFinal((key + "\n" + payload).getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("cannot sign count token", e);
+        }
+    }
+
+    private static class Entry {
+        private final long total;
+        private final long generation;
+        private final long expiresAt;
+
+        private Entry(long total, long generation, long expiresAt) {
+            this.total = total;
+            this.generation = generation;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isAlive(long currentGeneration, long now) {
+            return generation == currentGeneration && now < expiresAt;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package study.querydsl.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import study.querydsl.dto.MemberSearchKey;
+
+import javax.persistence.EntityManager;
+import java.util.Arrays;
+import java.util.OptionalLong;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 페이징 검색의 근사 total count
+ * 1. 테이블 전체 row 수는 DB 통계(H2 는 INFORMATION_SCHEMA.TABLES.ROW_COUNT_ESTIMATE)에서 읽는다.
+ * 2. 조건이 있으면 [min(id), max(id)] 에서 무작위로 고른 sampleRanges 개의 id 구간(합쳐서 약 sampleSize 명)을 표본으로,
+ *    구간의 회원 중 조건에 맞는 비율을 구해서 전체 row 수에 곱한다. 구간 하나는 id 범위 조회 한번이라 싸다.
+ * 3. 구간별 비율의 차이로 95% 신뢰구간을 구한다 (구간 단위 표본이므로 구간 사이 분산을 쓴다).
+ *    오차가 maxRelativeError 를 넘거나, 결과가 exactThreshold 보다 작으면 empty 를 반환해서 정확한 count 를 쓰게 한다.
+ * 가입 시기에 따라 몰려 있는 조건은 구간마다 비율이 크게 달라져서 오차 한계에 걸리고, 정확한 count 로 넘어간다.
+ */
+@Slf4j
+@Component
+public class MemberCountEstimator {
+
+    private static final double Z_95 = 1.96;
+    private static final String H2_ROW_COUNT_SQL =
+            "select row_count_estimate from information_schema.tables where table_name = 'MEMBER'";
+
+    private final MemberSearchShapeCache shapeCache;
+    private final JdbcTemplate jdbcTemplate;
+    private final String rowCountSql;
+    private final long exactThreshold;
+    private final int sampleSize;
+    private final int sampleRanges;
+    private final double maxRelativeError;
+
+    public MemberCountEstimator(MemberSearchShapeCache shapeCache, JdbcTemplate jdbcTemplate,
+                                @Value("${querydsl.count-estimate.row-count-sql:" + H2_ROW_COUNT_SQL + "}") String rowCountSql,
+                                @Value("${querydsl.count-estimate.exact-threshold:100000}") long exactThreshold,
+                                @Value("${querydsl.count-estimate.sample-size:10000}") int sampleSize,
+                                @Value("${querydsl.count-estimate.sample-ranges:20}") int sampleRanges,
+                                @Value("${querydsl.count-estimate.max-relative-error:0.05}") double maxRelativeError) {
+        this.shapeCache = shapeCache;
+        this.jdbcTemplate = jdbcTemplate;
+        this.rowCountSql = rowCountSql;
+        this.exactThreshold = exactThreshold;
+        this.sampleSize = sampleSize;
+        this.sampleRanges = sampleRanges;
+        this.maxRelativeError = maxRelativeError;
+    }
+
+    /**
+     * 근사값을 쓸 수 없으면 empty 를 반환한다. 이때는 호출하는 쪽에서 정확한 count 를 실행한다.
+     */
+    public OptionalLong estimate(EntityManager em, MemberSearchKey key) {
+        if (key.hasUsernameFragment()) {
+            // 후보 id 로 좁혀서 조회하므로 정확한 count 도 싸다
+            return OptionalLong.empty();
+        }
+        long tableRows = tableRows();
+        if (tableRows < exactThreshold) {
+            return OptionalLong.empty();
+        }
+        if (key.shape() == 0) {
+            return OptionalLong.of(tableRows);
+        }
+
+        Object[] bounds = em.createQuery("select min(m.id), max(m.id) from Member m", Object[].class)
+                .getSingleResult();
+        if (bounds[0] == null || sampleRanges < 2) {
+            return OptionalLong.empty();
+        }
+        long minId = (Long) bounds[0];
+        long span = (Long) bounds[1] - minId + 1;
+        // id 에 빈 곳이 있으므로 id 밀도(tableRows / span)로 구간 하나에 약 sampleSize / sampleRanges 명이 들도록 폭을 정한다
+        long width = Math.min(span, Math.max(1, (long) Math.ceil((double) sampleSize / sampleRanges * span / tableRows)));
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long[] rows = new long[sampleRanges];
+        long[] matches = new long[sampleRanges];
+        for (int i = 0; i < sampleRanges; i++) {
+            long fromId = minId + random.nextLong(span - width + 1);
+            long toId = fromId + width - 1;
+            rows[i] = em.createQuery("select count(m) from Member m where m.id between :fromId and :toId", Long.class)
+                    .setParameter("fromId", fromId)
+                    .setParameter("toId", toId)
+                    .getSingleResult();
+            matches[i] = shapeCache.countBetween(em, key, fromId, toId);
+        }
+        return extrapolate(tableRows, rows, matches, exactThreshold, maxRelativeError);
+    }
+
+    /**
+     * 구간 i 의 회원 수 rows[i], 조건에 맞는 수 matches[i] 로 비율 p = sum(matches) / sum(rows) 를 추정한다 (비율 추정량)
+     * 분산은 구간 사이 편차로 구한다: var(p) = sum((matches[i] - p * rows[i])^2) / (k(k-1) * rowsMean^2)
+     * 오차 한계 z * sqrt(var(p)) * tableRows 를 검사한다.
+     */
+    static OptionalLong extrapolate(long tableRows, long[] rows, long[] matches,
+                                    long exactThreshold, double maxRelativeError) {
+        int k = rows.length;
+        long sampleRows = Arrays.stream(rows).sum();
+        if (k < 2 || sampleRows == 0) {
+            return OptionalLong.empty();
+        }
+        double p = (double) Arrays.stream(matches).sum() / sampleRows;
+        double rowsMean = (double) sampleRows / k;
+        double squares = 0;
+        for (int i = 0; i < k; i++) {
+            double deviation = matches[i] - p * rows[i];
+            squares += deviation * deviation;
+        }
+        double variance = squares / ((double) k * (k - 1) * rowsMean * rowsMean);
+        long estimate = Math.round(p * tableRows);
+        double margin = Z_95 * Math.sqrt(variance) * tableRows;
+        if (estimate < exactThreshold || margin > maxRelativeError * estimate) {
+            return OptionalLong.empty();
+        }
+        return OptionalLong.of(estimate);
+    }
+
+    private long tableRows() {
+        if (!StringUtils.hasText(rowCountSql)) {
+            return -1;
+        }
+        try {
+            Long rows = jdbcTemplate.queryForObject(rowCountSql, Long.class);
+            return rows == null ? -1 : rows;
+        } catch (DataAccessException e) {
+            log.warn("table row count estimate is not available, falling back to exact count: {}", e.getMessage());
+            return -1;
+        }
+    }
+}
@@ -1,11 +1,16 @@
 package study.querydsl.repository;
 
 import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.Tuple;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.annotations.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberSearchKey;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
@@ -13,6 +18,8 @@ import study.querydsl.entity.Member;
 import javax.persistence.EntityManager;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
@@ -22,38 +29,50 @@ public class MemberJpaRepository {
 
     private final EntityManager em;
     private final JPAQueryFactory queryFactory;
+    private final MemberSearchShapeCache shapeCache;
+    private final MemberResultCache resultCache;
+    private final QueryMetrics queryMetrics;
 
-    public MemberJpaRepository(EntityManager em) {
+    public MemberJpaRepository(EntityManager em, MemberSearchShapeCache shapeCache, MemberResultCache resultCache,
+                               QueryMetrics queryMetrics) {
         this.em = em;
         this.queryFactory = new JPAQueryFactory(em);
+        this.shapeCache = shapeCache;
+        this.resultCache = resultCache;
+        this.queryMetrics = queryMetrics;
     }
 
     public void save(Member member) {
         em.persist(member);
     }
 
+    @Transactional(readOnly = true)
     public Optional<Member> findById(Long id) {
         Member findMember = em.find(Member.class, id);
         return Optional.ofNullable(findMember);
     }
 
+    @Transactional(readOnly = true)
     public List<Member> findAll() {
         return em.createQuery("select m from Member m", Member.class)
                 .getResultList();
     }
 
+    @Transactional(readOnly = true)
     public List<Member> findAllQuerydsl() {
         return queryFactory
                 .selectFrom(member)
                 .fetch();
     }
 
+    @Transactional(readOnly = true)
     public List<Member> findByName(String username) {
         return em.createQuery("select m from Member m where m.username = :username", Member.class)
                 .setParameter("username", username)
                 .getResultList();
     }
 
+    @Transactional(readOnly = true)
     public List<Member> findByNameQuerydsl(String username) {
         return queryFactory
                 .selectFrom(member)
@@ -61,6 +80,7 @@ public class MemberJpaRepository {
                 .fetch();
     }
 
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> searchByBuilder(MemberSearchCondition cond) {
 
         BooleanBuilder builder = new BooleanBuilder();
@@ -76,8 +96,11 @@ public class MemberJpaRepository {
         if (cond.getAgeLoe() != null) {
             builder.and(member.age.loe(cond.getAgeLoe()));
         }
+        // usernameContains, usernameStartsWith
+        MemberSearchKey key = MemberSearchKey.of(cond);
+        builder.and(shapeCache.usernameFragment(key));
 
-        return queryFactory
+        JPAQuery<MemberTeamDto> query = queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
                         member.username,
@@ -87,12 +110,43 @@ public class MemberJpaRepository {
                 ))
                 .from(member)
                 .leftJoin(member.team, team).fetchJoin()
-                .where(builder)
-                .fetch();
+                .where(builder);
+        return queryMetrics.content("searchByBuilder", QueryMetrics.shapeTag(key), query::fetch);
     }
 
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> searchByMultipleWhere(MemberSearchCondition condition) {
-        return queryFactory
+        return searchByMultipleWhere(condition, false);
+    }
+
+    /**
+     * 검색 조건 모양별로 미리 만들어둔 JPQL 에 값만 바인딩해서 실행한다 (MemberSearchShapeCache)
+     * 결과는 MemberResultCache 에 저장하고, bypassCache 면 캐시를 거치지 않고 바로 조회한다.
+     */
+    @Transactional(readOnly = true)
+    public List<MemberTeamDto> searchByMultipleWhere(MemberSearchCondition condition, boolean bypassCache) {
+        MemberSearchKey key = MemberSearchKey.of(condition);
+        Supplier<List<MemberTeamDto>> query = () -> queryMetrics.content("searchByMultipleWhere",
+                QueryMetrics.shapeTag(key), () -> shapeCache.fetch(em, key));
+        return bypassCache ? query.get() : resultCache.get(key, query);
+    }
+
+    /**
+     * searchByMultipleWhere 와 같은 쿼리를 forward-only 커서로 한 row 씩 읽는다
+     * 결과 전체를 List 로 만들지 않기 때문에 대용량 export 에서도 힙 사용량이 일정하다.
+     * 반환된 Stream 은 트랜잭션 안에서 소비하고 반드시 close 해야 한다.
+     */
+    public Stream<MemberTeamDto> streamByMultipleWhere(MemberSearchCondition condition, int fetchSize) {
+        return streamByMultipleWhere(condition, fetchSize, null, null);
+    }
+
+    /**
+     * member_id 가 [fromId, toId) 범위인 회원만 id 순으로 읽는다 (병렬 export 의 한 구간)
+     * 범위가 없으면(null) 정렬하지 않는다.
+     */
+    public Stream<MemberTeamDto> streamByMultipleWhere(MemberSearchCondition condition, int fetchSize,
+                                                       Long fromId, Long toId) {
+        JPAQuery<MemberTeamDto> query = queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
                         member.username,
@@ -101,14 +155,38 @@ public class MemberJpaRepository {
                         team.name.as("teamName")
                 ))
                 .from(member)
-                .leftJoin(member.team, team).fetchJoin()
+                .leftJoin(member.team, team)
                 .where(
                         userNameEq(condition.getUsername()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                )
-                .fetch();
+                        ageLoe(condition.getAgeLoe()),
+                        shapeCache.usernameFragment(MemberSearchKey.of(condition)),
+                        fromId != null ? member.id.goe(fromId) : null,
+                        toId != null ? member.id.lt(toId) : null
+                );
+        if (fromId != null || toId != null) {
+            query.orderBy(member.id.asc());
+        }
+        return query
+                .setHint(QueryHints.FETCH_SIZE, fetchSize)
+                .setHint(QueryHints.READ_ONLY, true)
+                .stream();
+    }
+
+    /**
+     * 전체 회원 id 의 {최솟값, 최댓값}. 회원이 없으면 null
+     */
+    @Transactional(readOnly = true)
+    public long[] findIdRange() {
+        Tuple range = queryFactory
+                .select(member.id.min(), member.id.max())
+                .from(member)
+                .fetchOne();
+        if (range == null || range.get(0, Long.class) == null) {
+            return null;
+        }
+        return new long[]{range.get(0, Long.class), range.get(1, Long.class)};
     }
 
     private BooleanExpression userNameEq(String name) {
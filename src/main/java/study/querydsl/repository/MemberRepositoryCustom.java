@@ -2,13 +2,25 @@ package study.querydsl.repository;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import study.querydsl.dto.CursorSlice;
+import study.querydsl.dto.MemberCursor;
 import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamColumns;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.SearchPage;
 
 import java.util.List;
 
 public interface MemberRepositoryCustom {
     List<MemberTeamDto> searchByMultipleWhere(MemberSearchCondition condition);
+    List<MemberTeamDto> searchByMultipleWhere(MemberSearchCondition condition, boolean bypassCache);
     Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable);
     Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable);
+    SearchPage<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable, String totalToken);
+    SearchPage<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable, String totalToken,
+                                                boolean estimateTotal);
+    Slice<MemberTeamDto> searchSlice(MemberSearchCondition condition, Pageable pageable);
+    MemberTeamColumns searchColumnar(MemberSearchCondition condition);
+    CursorSlice<MemberTeamDto> searchByCursor(MemberSearchCondition condition, MemberCursor cursor, int size);
 }
@@ -1,84 +1,193 @@
 package study.querydsl.repository;
 
-import com.querydsl.core.QueryResults;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
+import study.querydsl.dto.CursorSlice;
+import study.querydsl.dto.MemberCursor;
 import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberSearchKey;
+import study.querydsl.dto.MemberTeamColumns;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.dto.SearchPage;
 import study.querydsl.entity.Member;
 
 import javax.persistence.EntityManager;
 import java.util.List;
+import java.util.OptionalLong;
+import java.util.function.Supplier;
 
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
 
 public class MemberRepositoryImpl implements MemberRepositoryCustom {
 
+    private final EntityManager em;
     private final JPAQueryFactory queryFactory;
-
-    public MemberRepositoryImpl(EntityManager em) {
+    private final MemberCountCache countCache;
+    private final MemberCountEstimator countEstimator;
+    private final MemberSearchShapeCache shapeCache;
+    private final MemberResultCache resultCache;
+    private final QueryMetrics queryMetrics;
+    private final int columnarFetchSize;
+
+    public MemberRepositoryImpl(EntityManager em, MemberCountCache countCache, MemberCountEstimator countEstimator,
+                                MemberSearchShapeCache shapeCache, MemberResultCache resultCache,
+                                QueryMetrics queryMetrics,
+                                @Value("${querydsl.columnar.fetch-size:10000}") int columnarFetchSize) {
+        this.em = em;
         this.queryFactory = new JPAQueryFactory(em);
+        this.countCache = countCache;
+        this.countEstimator = countEstimator;
+        this.shapeCache = shapeCache;
+        this.resultCache = resultCache;
+        this.queryMetrics = queryMetrics;
+        this.columnarFetchSize = columnarFetchSize;
     }
+
     @Override
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> searchByMultipleWhere(MemberSearchCondition condition) {
-        return queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
-                ))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        userNameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                )
-                .fetch();
+        return searchByMultipleWhere(condition, false);
     }
 
+    /**
+     * 검색 조건 모양별로 미리 만들어둔 JPQL 에 값만 바인딩해서 실행한다 (MemberSearchShapeCache)
+     * 결과는 MemberResultCache 에 저장하고, bypassCache 면 캐시를 거치지 않고 바로 조회한다.
+     */
     @Override
+    @Transactional(readOnly = true)
+    public List<MemberTeamDto> searchByMultipleWhere(MemberSearchCondition condition, boolean bypassCache) {
+        MemberSearchKey key = MemberSearchKey.of(condition);
+        Supplier<List<MemberTeamDto>> query = () -> queryMetrics.content("searchByMultipleWhere",
+                QueryMetrics.shapeTag(key), () -> shapeCache.fetch(em, key));
+        return bypassCache ? query.get() : resultCache.get(key, query);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
-        QueryResults<MemberTeamDto> results = queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
-                ))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        userNameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                )
-                .offset(pageable.getOffset())
-                .limit(pageable.getPageSize())
-                .fetchResults();
+        MemberSearchKey key = MemberSearchKey.of(condition);
+        String shape = QueryMetrics.shapeTag(key);
+        List<MemberTeamDto> content = resultCache.get(key, pageable.getOffset(), pageable.getPageSize(),
+                () -> queryMetrics.content("searchPageSimple", shape,
+                        () -> shapeCache.fetch(em, key, pageable.getOffset(), pageable.getPageSize())));
 
-        List<MemberTeamDto> content = results.getResults();
-        long totalCount = results.getTotal();
+        // fetchResults() 는 항상 count 쿼리를 같이 날리기 때문에 캐시된 count 를 사용한다
+        long totalCount = countCache.count(key, null,
+                () -> queryMetrics.count("searchPageSimple", shape, () -> shapeCache.count(em, key)));
 
         return new PageImpl<>(content, pageable, totalCount);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
-        List<MemberTeamDto> content = queryFactory
+        return searchPageComplex(condition, pageable, null);
+    }
+
+    /**
+     * totalToken 이 유효하면 count 쿼리를 생략하고, 그렇지 않으면 count 캐시를 거쳐서 total 을 구한다
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public SearchPage<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable,
+                                                       String totalToken) {
+        return searchPageComplex(condition, pageable, totalToken, false);
+    }
+
+    /**
+     * estimateTotal 이면 먼저 근사 count(MemberCountEstimator)를 시도하고, 근사값을 쓸 수 없을 때만 정확한 count 를 구한다
+     * 유효한 totalToken 이나 캐시된 count 가 있으면 근사하지 않고 그 정확한 값을 쓴다.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public SearchPage<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable,
+                                                       String totalToken, boolean estimateTotal) {
+        MemberSearchKey key = MemberSearchKey.of(condition);
+        String shape = QueryMetrics.shapeTag(key);
+        List<MemberTeamDto> content = resultCache.get(key, pageable.getOffset(), pageable.getPageSize(),
+                () -> queryMetrics.content("searchPageComplex", shape,
+                        () -> shapeCache.fetch(em, key, pageable.getOffset(), pageable.getPageSize())));
+
+        if (estimateTotal && !countCache.cached(key, totalToken).isPresent()) {
+            OptionalLong estimate = queryMetrics.time("searchPageComplex", shape, QueryMetrics.ESTIMATE,
+                    () -> countEstimator.estimate(em, key));
+            if (estimate.isPresent()) {
+                return SearchPage.estimated(content, pageable, estimate.getAsLong());
+            }
+        }
+
+//        return new PageImpl<>(content, pageable, totalCount);
+        Page<MemberTeamDto> page = PageableExecutionUtils.getPage(content, pageable,
+                () -> countCache.count(key, totalToken,
+                        () -> queryMetrics.count("searchPageComplex", shape, () -> shapeCache.count(em, key))));
+        return new SearchPage<>(page.getContent(), pageable, page.getTotalElements(),
+                countCache.issueToken(key, page.getTotalElements()));
+    }
+
+    /**
+     * 무한 스크롤용 조회
+     * count 쿼리 없이 pageSize + 1 개를 조회해서 다음 페이지가 있는지만 판단한다.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<MemberTeamDto> searchSlice(MemberSearchCondition condition, Pageable pageable) {
+        MemberSearchKey key = MemberSearchKey.of(condition);
+        int pageSize = pageable.getPageSize();
+        List<MemberTeamDto> content = queryMetrics.content("searchSlice", QueryMetrics.shapeTag(key),
+                () -> shapeCache.fetch(em, key, pageable.getOffset(), pageSize + 1));
+
+        boolean hasNext = content.size() > pageSize;
+        if (hasNext) {
+            content = content.subList(0, pageSize);
+        }
+        return new SliceImpl<>(content, pageable, hasNext);
+    }
+
+    /**
+     * 대용량 분석 조회용
+     * row 마다 MemberTeamDto 를 만들지 않고 커서에서 읽은 값을 바로 컬럼 배열에 채운다.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public MemberTeamColumns searchColumnar(MemberSearchCondition condition) {
+        MemberSearchKey key = MemberSearchKey.of(condition);
+        String shape = QueryMetrics.shapeTag(key);
+        MemberTeamColumns.Builder builder = MemberTeamColumns.builder();
+        MemberTeamColumns columns = queryMetrics.time("searchColumnar", shape, QueryMetrics.CONTENT, () -> {
+            shapeCache.scan(em, key, columnarFetchSize, row -> builder.add(
+                    (Long) row[0],
+                    (String) row[1],
+                    (Integer) row[2],
+                    (Long) row[3],
+                    (String) row[4]));
+            return builder.build();
+        });
+        queryMetrics.rows("searchColumnar", shape, columns.size());
+        return columns;
+    }
+
+    /**
+     * keyset(seek) 페이징
+     * offset 대신 (age, member.id) 가 마지막 커서보다 큰 row 부터 읽기 때문에 깊은 페이지도 첫 페이지와 비용이 같다.
+     * size + 1 개를 조회해서 다음 페이지가 있는지 판단한다.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public CursorSlice<MemberTeamDto> searchByCursor(MemberSearchCondition condition, MemberCursor cursor, int size) {
+        MemberSearchKey key = MemberSearchKey.of(condition);
+        JPAQuery<MemberTeamDto> query = queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
                         member.username,
@@ -92,25 +201,28 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
                         userNameEq(condition.getUsername()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
+                        ageLoe(condition.getAgeLoe()),
+                        shapeCache.usernameFragment(key),
+                        after(cursor)
                 )
-                .offset(pageable.getOffset())
-                .limit(pageable.getPageSize())
-                .fetch();
+                .orderBy(member.age.asc(), member.id.asc())
+                .limit(size + 1L);
+        List<MemberTeamDto> content = queryMetrics.content("searchByCursor",
+                QueryMetrics.shapeTag(key), query::fetch);
 
-        JPAQuery<Long> countQuery = queryFactory
-                .select(member.count())
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        userNameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                );
+        if (content.size() <= size) {
+            return new CursorSlice<>(content, null);
+        }
+        content = content.subList(0, size);
+        return new CursorSlice<>(content, MemberCursor.of(content.get(size - 1)).encode());
+    }
 
-//        return new PageImpl<>(content, pageable, totalCount);
-        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchOne);
+    private BooleanExpression after(MemberCursor cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        return member.age.gt(cursor.getAge())
+                .or(member.age.eq(cursor.getAge()).and(member.id.gt(cursor.getMemberId())));
     }
 
     private BooleanExpression userNameEq(String name) {
@@ -4,10 +4,12 @@ import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQuery;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.StringUtils;
 import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberSearchKey;
 import study.querydsl.entity.Member;
 
 import java.util.List;
@@ -18,8 +20,11 @@ import static study.querydsl.entity.QTeam.team;
 @Repository
 public class MemberRepositoryWithSupport extends Querydsl4RepositorySupport {
 
-    public MemberRepositoryWithSupport() {
+    private final MemberSearchShapeCache shapeCache;
+
+    public MemberRepositoryWithSupport(MemberSearchShapeCache shapeCache) {
         super(Member.class);
+        this.shapeCache = shapeCache;
     }
 
     public List<Member> basicSelect() {
@@ -40,43 +45,67 @@ public class MemberRepositoryWithSupport extends Querydsl4RepositorySupport {
                 .where(usernameEq(condition.getUsername()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()));
-        List<Member> content = getQuerydsl().applyPagination(pageable, query)
-                .fetch();
+                        ageLoe(condition.getAgeLoe()),
+                        usernameFragment(condition));
+        String shape = QueryMetrics.shapeTag(MemberSearchKey.of(condition));
+        List<Member> content = getQueryMetrics().content("searchPageByApplyPage", shape,
+                () -> getQuerydsl().applyPagination(pageable, query).fetch());
         return PageableExecutionUtils.getPage(content, pageable,
-                query::fetchCount);
+                () -> getQueryMetrics().count("searchPageByApplyPage", shape, query::fetchCount));
     }
 
     public Page<Member> applyPagination(MemberSearchCondition condition,
                                         Pageable pageable) {
-        return applyPagination(pageable, contentQuery -> contentQuery
+        return applyPagination("applyPagination", QueryMetrics.shapeTag(MemberSearchKey.of(condition)),
+                pageable, contentQuery -> contentQuery
                 .selectFrom(member)
                 .leftJoin(member.team, team)
                 .where(usernameEq(condition.getUsername()),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())));
+                        ageLoe(condition.getAgeLoe()),
+                        usernameFragment(condition)));
     }
 
     public Page<Member> applyPagination2(MemberSearchCondition condition,
                                          Pageable pageable) {
-        return applyPagination(pageable, contentQuery -> contentQuery
+        return applyPagination("applyPagination2", QueryMetrics.shapeTag(MemberSearchKey.of(condition)),
+                pageable, contentQuery -> contentQuery
                         .selectFrom(member)
                         .leftJoin(member.team, team)
                         .where(usernameEq(condition.getUsername()),
                                 teamNameEq(condition.getTeamName()),
                                 ageGoe(condition.getAgeGoe()),
-                                ageLoe(condition.getAgeLoe())),
+                                ageLoe(condition.getAgeLoe()),
+                                usernameFragment(condition)),
                 countQuery -> countQuery
                         .selectFrom(member)
                         .leftJoin(member.team, team)
                         .where(usernameEq(condition.getUsername()),
                                 teamNameEq(condition.getTeamName()),
                                 ageGoe(condition.getAgeGoe()),
-                                ageLoe(condition.getAgeLoe()))
+                                ageLoe(condition.getAgeLoe()),
+                                usernameFragment(condition))
         );
     }
 
+    public Slice<Member> applySlicing(MemberSearchCondition condition,
+                                      Pageable pageable) {
+        return applySlicing("applySlicing", QueryMetrics.shapeTag(MemberSearchKey.of(condition)),
+                pageable, contentQuery -> contentQuery
+                        .selectFrom(member)
+                        .leftJoin(member.team, team)
+                        .where(usernameEq(condition.getUsername()),
+                                teamNameEq(condition.getTeamName()),
+                                ageGoe(condition.getAgeGoe()),
+                                ageLoe(condition.getAgeLoe()),
+                                usernameFragment(condition)));
+    }
+
+    private BooleanExpression usernameFragment(MemberSearchCondition condition) {
+        return shapeCache.usernameFragment(MemberSearchKey.of(condition));
+    }
+
     private BooleanExpression usernameEq(String username) {
         return StringUtils.hasText(username) ? member.username.eq(username) : null;
     }
@@ -0,0 +1,131 @@
+package study.querydsl.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.dto.MemberSearchKey;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.EntityChangedEvent;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 회원 검색 결과 캐시
+ * 정규화된 검색 조건(MemberSearchKey)과 페이지(offset, limit)를 키로 결과 리스트를 저장한다.
+ * 크기는 전체 row 수(max-rows) 기준으로 제한하고, 넘치면 Caffeine 이 오래 안 쓴 항목부터 내보낸다.
+ * Member, Team 이 커밋되거나 벌크 연산 이벤트(EntityChangedEvent)가 오면 전부 비운다.
+ * Member 벌크 update, delete 는 MemberBulkRepository 가 BULK 이벤트로 알려주지만,
+ * 그 밖의 벌크 연산이나 네이티브 SQL, 다른 애플리케이션이 바꾼 데이터는 알 수 없으므로 ttl 이 지나야 반영된다.
+ * 쓰기 트랜잭션 안에서는 아직 커밋되지 않은 자기 변경을 봐야 하므로 캐시를 사용하지 않는다.
+ * MemberTeamDto 는 수정할 수 있는 객체라서 저장할 때와 꺼낼 때 복사한다. 호출한 쪽이 결과를 고쳐도 캐시는 바뀌지 않는다.
+ */
+@Component
+public class MemberResultCache {
+
+    public static final long UNPAGED = -1;
+
+    private final boolean enabled;
+    private final Cache<ResultKey, List<MemberTeamDto>> cache;
+    private final AtomicLong generation = new AtomicLong();
+
+    public MemberResultCache(MeterRegistry registry,
+                             @Value("${querydsl.result-cache.enabled:true}") boolean enabled,
+                             @Value("${querydsl.result-cache.max-rows:100000}") long maxRows,
+                             @Value("${querydsl.result-cache.ttl:60s}") Duration ttl) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxRows)
+                .weigher((ResultKey key, List<MemberTeamDto> value) -> value.size() + 1)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, "memberSearch");
+        Gauge.builder("querydsl.result-cache.hit.ratio", cache, c -> c.stats().hitRate())
+                .description("hit ratio of the member search result cache")
+                .register(registry);
+    }
+
+    public List<MemberTeamDto> get(MemberSearchKey key, Supplier<List<MemberTeamDto>> loader) {
+        return get(key, UNPAGED, (int) UNPAGED, loader);
+    }
+
+    public List<MemberTeamDto> get(MemberSearchKey key, long offset, int limit,
+                                   Supplier<List<MemberTeamDto>> loader) {
+        if (!enabled || inWriteTransaction()) {
+            return loader.get();
+        }
+        ResultKey resultKey = new ResultKey(key, offset, limit);
+        List<MemberTeamDto> cached = cache.getIfPresent(resultKey);
+        if (cached != null) {
+            return copyOf(cached);
+        }
+
+        // 조회 중에 무효화가 일어났다면 이미 오래된 결과일 수 있으므로 저장하지 않는다
+        long currentGeneration = generation.get();
+        List<MemberTeamDto> result = loader.get();
+        if (currentGeneration == generation.get()) {
+            cache.put(resultKey, Collections.unmodifiableList(copyOf(result)));
+        }
+        return result;
+    }
+
+    private static List<MemberTeamDto> copyOf(List<MemberTeamDto> rows) {
+        List<MemberTeamDto> copy = new ArrayList<>(rows.size());
+        for (MemberTeamDto row : rows) {
+            copy.add(new MemberTeamDto(row.getMemberId(), row.getUsername(), row.getAge(),
+                    row.getTeamId(), row.getTeamName()));
+        }
+        return copy;
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    long size() {
+        cache.cleanUp();
+        return cache.estimatedSize();
+    }
+
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        if (event.isFor(Member.class) || event.isFor(Team.class)) {
+            invalidateAll();
+        }
+    }
+
+    private static boolean inWriteTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    @EqualsAndHashCode
+    @ToString
+    private static final class ResultKey {
+        private final MemberSearchKey key;
+        private final long offset;
+        private final int limit;
+
+        private ResultKey(MemberSearchKey key, long offset, int limit) {
+            this.key = key;
+            this.offset = offset;
+            this.limit = limit;
+        }
+    }
+}
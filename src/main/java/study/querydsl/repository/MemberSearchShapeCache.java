@@ -0,0 +1,253 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.Param;
+import com.querydsl.jpa.HQLTemplates;
+import com.querydsl.jpa.impl.JPAQuery;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchKey;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 회원 검색 쿼리의 모양(shape)별 JPQL 캐시
+ * 검색 조건은 4개뿐이라 가능한 쿼리 모양은 16가지다.
+ * 모양마다 Param 으로 만든 Querydsl 템플릿을 한번만 JPQL 로 직렬화해두고, 요청마다 파라미터 값만 바인딩한다.
+ * 직렬화는 EntityManager 로 만든 쿼리와 같게 Hibernate 용 HQLTemplates 로 한다.
+ * 요청마다 QMemberTeamDto, BooleanExpression 트리를 새로 만들고 직렬화하는 비용이 없어지고,
+ * Hibernate 의 query plan cache 는 항상 같은 문자열을 받게 된다.
+ * username 부분 일치 / 앞부분 일치 조건은 값마다 후보 id 목록이 달라서 미리 만들지 않고,
+ * MemberUsernameIndex 로 구한 후보 id 를 id in (...) 조건으로 넣어서 그때그때 조회한다.
+ */
+@Component
+public class MemberSearchShapeCache {
+
+    private static final Param<String> USERNAME = new Param<>(String.class, "username");
+    private static final Param<String> TEAM_NAME = new Param<>(String.class, "teamName");
+    private static final Param<Integer> AGE_GOE = new Param<>(Integer.class, "ageGoe");
+    private static final Param<Integer> AGE_LOE = new Param<>(Integer.class, "ageLoe");
+    private static final Param<Long> FROM_ID = new Param<>(Long.class, "fromId");
+    private static final Param<Long> TO_ID = new Param<>(Long.class, "toId");
+
+    private static final QMemberTeamDto PROJECTION = new QMemberTeamDto(
+            member.id.as("memberId"),
+            member.username,
+            member.age,
+            team.id.as("teamId"),
+            team.name.as("teamName")
+    );
+
+    private final String[] contentQueries = new String[MemberSearchKey.SHAPE_COUNT];
+    private final String[] countQueries = new String[MemberSearchKey.SHAPE_COUNT];
+    private final String[] sampleCountQueries = new String[MemberSearchKey.SHAPE_COUNT];
+    private final MemberUsernameIndex usernameIndex;
+
+    public MemberSearchShapeCache() {
+        this(null);
+    }
+
+    @Autowired
+    public MemberSearchShapeCache(MemberUsernameIndex usernameIndex) {
+        this.usernameIndex = usernameIndex;
+        for (int shape = 0; shape < MemberSearchKey.SHAPE_COUNT; shape++) {
+            contentQueries[shape] = compile(template()
+                    .select(PROJECTION)
+                    .from(member)
+                    .leftJoin(member.team, team)
+                    .where(predicates(shape)), shape, Integer.bitCount(shape));
+            countQueries[shape] = compile(template()
+                    .select(member.count())
+                    .from(member)
+                    .leftJoin(member.team, team)
+                    .where(predicates(shape)), shape, Integer.bitCount(shape));
+            sampleCountQueries[shape] = compile(template()
+                    .select(member.count())
+                    .from(member)
+                    .leftJoin(member.team, team)
+                    .where(predicates(shape))
+                    .where(member.id.between(FROM_ID, TO_ID)), shape, Integer.bitCount(shape) + 2);
+        }
+    }
+
+    public List<MemberTeamDto> fetch(EntityManager em, MemberSearchKey key) {
+        if (key.hasUsernameFragment()) {
+            return fragmentQuery(em, key).select(PROJECTION).fetch();
+        }
+        return toDto(bind(em.createQuery(contentQueries[key.shape()]), key).getResultList());
+    }
+
+    /**
+     * JPA 의 firstResult 는 int 라서 int 범위를 넘는 offset 은 IllegalArgumentException 으로 거절한다
+     */
+    public List<MemberTeamDto> fetch(EntityManager em, MemberSearchKey key, long offset, int limit) {
+        int firstResult;
+        try {
+            firstResult = Math.toIntExact(offset);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("offset is too large: " + offset, e);
+        }
+        if (key.hasUsernameFragment()) {
+            return fragmentQuery(em, key).select(PROJECTION).offset(firstResult).limit(limit).fetch();
+        }
+        Query query = bind(em.createQuery(contentQueries[key.shape()]), key)
+                .setFirstResult(firstResult)
+                .setMaxResults(limit);
+        return toDto(query.getResultList());
+    }
+
+    /**
+     * DTO 를 만들지 않고 (memberId, username, age, teamId, teamName) row 를 커서로 하나씩 넘겨준다
+     */
+    public void scan(EntityManager em, MemberSearchKey key, int fetchSize, Consumer<Object[]> rowConsumer) {
+        if (key.hasUsernameFragment()) {
+            try (Stream<Tuple> rows = fragmentQuery(em, key)
+                    .select(member.id, member.username, member.age, team.id, team.name)
+                    .setHint(QueryHints.FETCH_SIZE, fetchSize)
+                    .setHint(QueryHints.READ_ONLY, true)
+                    .stream()) {
+                rows.forEach(row -> rowConsumer.accept(row.toArray()));
+            }
+            return;
+        }
+        Query query = bind(em.createQuery(contentQueries[key.shape()]), key)
+                .setHint(QueryHints.FETCH_SIZE, fetchSize)
+                .setHint(QueryHints.READ_ONLY, true);
+        try (Stream<?> rows = query.getResultStream()) {
+            rows.forEach(row -> rowConsumer.accept((Object[]) row));
+        }
+    }
+
+    public long count(EntityManager em, MemberSearchKey key) {
+        if (key.hasUsernameFragment()) {
+            return fragmentQuery(em, key).select(member.count()).fetchOne();
+        }
+        return (Long) bind(em.createQuery(countQueries[key.shape()]), key).getSingleResult();
+    }
+
+    /**
+     * id 가 fromId 이상 toId 이하인 회원 중에서 조건에 맞는 회원 수 (표본 count 용)
+     */
+    public long countBetween(EntityManager em, MemberSearchKey key, long fromId, long toId) {
+        if (key.hasUsernameFragment()) {
+            return fragmentQuery(em, key).select(member.count()).where(member.id.between(fromId, toId)).fetchOne();
+        }
+        int position = Integer.bitCount(key.shape());
+        return (Long) bind(em.createQuery(sampleCountQueries[key.shape()]), key)
+                .setParameter(position + 1, fromId)
+                .setParameter(position + 2, toId)
+                .getSingleResult();
+    }
+
+    /**
+     * username 부분 일치 / 앞부분 일치 조건
+     * 색인으로 후보를 구할 수 있으면 id in (후보) 를 함께 걸어서 DB 는 후보 row 만 like 로 확인한다.
+     */
+    public BooleanExpression usernameFragment(MemberSearchKey key) {
+        if (!key.hasUsernameFragment()) {
+            return null;
+        }
+        BooleanExpression like = null;
+        if (key.getUsernameContains() != null) {
+            like = member.username.containsIgnoreCase(key.getUsernameContains());
+        }
+        if (key.getUsernameStartsWith() != null) {
+            BooleanExpression startsWith = member.username.startsWithIgnoreCase(key.getUsernameStartsWith());
+            like = like == null ? startsWith : like.and(startsWith);
+        }
+        List<Long> candidates = usernameIndex == null ? null : usernameIndex.candidates(key);
+        return candidates == null ? like : member.id.in(candidates).and(like);
+    }
+
+    private JPAQuery<?> fragmentQuery(EntityManager em, MemberSearchKey key) {
+        return new JPAQuery<Void>(em)
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(
+                        key.getUsername() != null ? member.username.eq(key.getUsername()) : null,
+                        key.getTeamName() != null ? team.name.eq(key.getTeamName()) : null,
+                        key.getAgeGoe() != null ? member.age.goe(key.getAgeGoe()) : null,
+                        key.getAgeLoe() != null ? member.age.loe(key.getAgeLoe()) : null,
+                        usernameFragment(key)
+                );
+    }
+
+    String getContentQuery(int shape) {
+        return contentQueries[shape];
+    }
+
+    String getCountQuery(int shape) {
+        return countQueries[shape];
+    }
+
+    String getSampleCountQuery(int shape) {
+        return sampleCountQueries[shape];
+    }
+
+    private static BooleanExpression[] predicates(int shape) {
+        return new BooleanExpression[]{
+                (shape & MemberSearchKey.USERNAME) != 0 ? member.username.eq(USERNAME) : null,
+                (shape & MemberSearchKey.TEAM_NAME) != 0 ? team.name.eq(TEAM_NAME) : null,
+                (shape & MemberSearchKey.AGE_GOE) != 0 ? member.age.goe(AGE_GOE) : null,
+                (shape & MemberSearchKey.AGE_LOE) != 0 ? member.age.loe(AGE_LOE) : null
+        };
+    }
+
+    private static JPAQuery<Void> template() {
+        return new JPAQuery<>((EntityManager) null, HQLTemplates.DEFAULT);
+    }
+
+    /**
+     * Querydsl 은 파라미터를 등장 순서대로 ?1, ?2 ... 로 직렬화한다
+     * bind 가 같은 순서로 값을 넣기 때문에, 직렬화 결과의 파라미터 수가 다르면 바로 실패시킨다.
+     */
+    private static String compile(JPAQuery<?> template, int shape, int expected) {
+        String jpql = template.toString();
+        for (int position = 1; position <= expected; position++) {
+            if (!jpql.contains("?" + position)) {
+                throw new IllegalStateException("Unexpected parameter layout for shape " + shape + ": " + jpql);
+            }
+        }
+        if (jpql.contains("?" + (expected + 1))) {
+            throw new IllegalStateException("Unexpected parameter layout for shape " + shape + ": " + jpql);
+        }
+        return jpql;
+    }
+
+    private static Query bind(Query query, MemberSearchKey key) {
+        int position = 1;
+        if (key.getUsername() != null) {
+            query.setParameter(position++, key.getUsername());
+        }
+        if (key.getTeamName() != null) {
+            query.setParameter(position++, key.getTeamName());
+        }
+        if (key.getAgeGoe() != null) {
+            query.setParameter(position++, key.getAgeGoe());
+        }
+        if (key.getAgeLoe() != null) {
+            query.setParameter(position, key.getAgeLoe());
+        }
+        return query;
+    }
+
+    private static List<MemberTeamDto> toDto(List<?> rows) {
+        List<MemberTeamDto> result = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            result.add(PROJECTION.newInstance((Object[]) row));
+        }
+        return result;
+    }
+}
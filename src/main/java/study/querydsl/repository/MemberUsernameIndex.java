@@ -0,0 +1,191 @@
+package study.querydsl.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.dto.MemberSearchKey;
+import study.querydsl.entity.Member;
+import study.querydsl.event.EntityChangedEvent;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * username 부분 일치 / 앞부분 일치 검색용 메모리 색인 (UsernameNgramIndex)
+ * 애플리케이션이 뜨면 전체 회원을 읽어서 색인을 만들고, 이후에는 커밋된 Member 변경 이벤트로 바로 갱신한다.
+ * 벌크 연산(BULK 이벤트)은 어떤 row 가 바뀌었는지 모르므로 색인을 버리고 다시 만든다.
+ * 색인이 돌려준 후보 밖의 회원은 조회되지 않으므로, Member 벌크 연산은 반드시 BULK 를 발행하는 MemberBulkRepository 로 실행한다.
+ * 색인이 준비되지 않았거나, 쓰기 트랜잭션 안이거나(커밋 전 변경이 색인에 없다), 후보가 너무 많으면 null 을 반환한다.
+ * 이때 호출하는 쪽은 like 조건만으로 조회한다.
+ * 후보는 id in (...) 바인딩 파라미터로 나가므로 max-candidates 는 수백 개로 둔다. 그보다 많으면 like 만으로 조회하는 편이 싸다.
+ */
+@Slf4j
+@Component
+public class MemberUsernameIndex {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final boolean enabled;
+    private final int maxCandidates;
+    private final int fetchSize;
+    private final ExecutorService rebuildExecutor =
+            Executors.newSingleThreadExecutor(new CustomizableThreadFactory("username-index-"));
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+
+    private final Object lock = new Object();
+    private volatile UsernameNgramIndex index;
+    private List<EntityChangedEvent> pending;
+    private boolean bulkDuringRebuild;
+
+    public MemberUsernameIndex(EntityManagerFactory entityManagerFactory,
+                               @Value("${querydsl.username-index.enabled:true}") boolean enabled,
+                               @Value("${querydsl.username-index.max-candidates:300}") int maxCandidates,
+                               @Value("${querydsl.username-index.fetch-size:10000}") int fetchSize) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.enabled = enabled;
+        this.maxCandidates = maxCandidates;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * 조건에 맞을 수 있는 회원 id. 색인을 쓸 수 없으면 null
+     */
+    public List<Long> candidates(MemberSearchKey key) {
+        UsernameNgramIndex current = index;
+        if (current == null || inWriteTransaction()) {
+            return null;
+        }
+        int[] ids = current.search(key.getUsernameContains(), key.getUsernameStartsWith(), maxCandidates);
+        if (ids == null) {
+            return null;
+        }
+        return Arrays.stream(ids).mapToObj(Long::valueOf).collect(Collectors.toList());
+    }
+
+    public boolean isReady() {
+        return index != null;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        scheduleRebuild();
+    }
+
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        if (!enabled || !event.isFor(Member.class)) {
+            return;
+        }
+        if (event.getType() == EntityChangedEvent.Type.BULK) {
+            synchronized (lock) {
+                index = null;
+                // 읽고 있는 색인에 벌크 연산 결과가 들어갔는지 알 수 없으므로, 진행 중인 rebuild 결과는 버린다
+                bulkDuringRebuild = pending != null;
+            }
+            scheduleRebuild();
+            return;
+        }
+        synchronized (lock) {
+            if (pending != null) {
+                pending.add(event);
+            }
+            if (index != null && !apply(index, event)) {
+                index = null;
+            }
+        }
+    }
+
+    public void scheduleRebuild() {
+        if (enabled && rebuildScheduled.compareAndSet(false, true)) {
+            rebuildExecutor.execute(this::rebuild);
+        }
+    }
+
+    /**
+     * 읽는 동안 들어온 변경은 pending 에 모아뒀다가 새 색인에 다시 적용한 뒤 교체한다
+     * 읽는 동안 벌크 연산이 커밋됐다면 새 색인을 쓰지 않는다. 그 BULK 이벤트가 다음 rebuild 를 예약해 두었다.
+     */
+    void rebuild() {
+        rebuildScheduled.set(false);
+        synchronized (lock) {
+            pending = new ArrayList<>();
+            bulkDuringRebuild = false;
+        }
+        long start = System.nanoTime();
+        UsernameNgramIndex rebuilt = new UsernameNgramIndex();
+        EntityManager em = entityManagerFactory.createEntityManager();
+        try {
+            em.unwrap(Session.class).setDefaultReadOnly(true);
+            em.getTransaction().begin();
+            try (Stream<Object[]> rows = em.createQuery("select m.id, m.username from Member m", Object[].class)
+                    .setHint(QueryHints.FETCH_SIZE, fetchSize)
+                    .getResultStream()) {
+                rows.filter(row -> row[1] != null)
+                        .forEach(row -> rebuilt.add((Long) row[0], (String) row[1]));
+            } finally {
+                em.getTransaction().rollback();
+            }
+        } catch (RuntimeException e) {
+            log.warn("username index rebuild failed, falling back to like search", e);
+            synchronized (lock) {
+                pending = null;
+            }
+            return;
+        } finally {
+            em.close();
+        }
+
+        synchronized (lock) {
+            boolean consistent = !bulkDuringRebuild;
+            for (EntityChangedEvent event : pending) {
+                consistent &= apply(rebuilt, event);
+            }
+            pending = null;
+            index = consistent ? rebuilt : null;
+        }
+        log.info("username index rebuilt: {} members, {} grams, ~{} bytes in {} ms", rebuilt.size(),
+                rebuilt.gramCount(), rebuilt.estimatedBytes(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static boolean apply(UsernameNgramIndex target, EntityChangedEvent event) {
+        Member member = (Member) event.getEntity();
+        String oldUsername = (String) event.getOldValue("username");
+        String newUsername = (String) event.getNewValue("username");
+        try {
+            if (oldUsername != null) {
+                target.remove(member.getId(), oldUsername);
+            }
+            if (newUsername != null) {
+                target.add(member.getId(), newUsername);
+            }
+            return true;
+        } catch (ArithmeticException e) {
+            log.warn("member id {} does not fit the username index, disabling it until the next rebuild", member.getId());
+            return false;
+        }
+    }
+
+    private static boolean inWriteTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+}
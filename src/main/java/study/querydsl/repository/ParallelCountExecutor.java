@@ -0,0 +1,169 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.QueryTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * 페이징의 count 쿼리를 content 쿼리와 동시에 실행하기 위한 전용 실행기
+ * count 쿼리는 작업 스레드의 읽기 전용 트랜잭션(readOnly TransactionTemplate, 별도 커넥션)에서 실행된다.
+ * 그래서 replication 이 켜져 있으면 @Transactional(readOnly = true) 조회처럼 replica 로 간다.
+ * 호출한 쪽의 트랜잭션과는 분리되어 있으므로 호출한 트랜잭션에서 아직 커밋하지 않은 변경은 count 에 보이지 않는다. 필요한 곳에서만 켜서 쓴다.
+ * timeout 은 submit 한 시점부터 잰다. 큐에서 기다린 시간도 포함되고, count 쿼리에는 남은 시간만큼의 JDBC 쿼리 timeout 을 건다.
+ */
+@Slf4j
+@Component
+public class ParallelCountExecutor {
+
+    private static final String QUERY_TIMEOUT_HINT = "javax.persistence.query.timeout";
+
+    private final TransactionTemplate readOnlyTx;
+    private final EntityManager em;
+    private final QueryMetrics queryMetrics;
+    private final ThreadPoolExecutor executor;
+    private final boolean enabled;
+    private final long timeoutMillis;
+
+    public ParallelCountExecutor(PlatformTransactionManager transactionManager,
+                                 EntityManager em,
+                                 QueryMetrics queryMetrics,
+                                 @Value("${querydsl.pagination.parallel-count.enabled:false}") boolean enabled,
+                                 @Value("${querydsl.pagination.parallel-count.threads:4}") int threads,
+                                 @Value("${querydsl.pagination.parallel-count.queue-capacity:100}") int queueCapacity,
+                                 @Value("${querydsl.pagination.parallel-count.timeout:5s}") Duration timeout) {
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.em = em;
+        this.queryMetrics = queryMetrics;
+        this.enabled = enabled;
+        this.timeoutMillis = timeout.toMillis();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("parallel-count-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 실행기가 가득 차 있으면 null 을 반환한다. 호출한 쪽은 순차 실행으로 돌아가면 된다.
+     */
+    public PendingCount submit(String method, String shape, Function<JPAQueryFactory, JPAQuery> countQuery) {
+        PendingCount pending = new PendingCount(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+        try {
+            pending.future = executor.submit(() -> queryMetrics.count(method, shape, () -> count(countQuery, pending)));
+            return pending;
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+    }
+
+    private long count(Function<JPAQueryFactory, JPAQuery> countQuery, PendingCount pending) {
+        return readOnlyTx.execute(status -> {
+            status.setRollbackOnly();
+            Session session = em.unwrap(Session.class);
+            try {
+                JPAQuery query = countQuery.apply(new JPAQueryFactory(em))
+                        .setHint(QUERY_TIMEOUT_HINT, Math.max(1, pending.remainingMillis()));
+                pending.running(session);
+                return query.fetchCount();
+            } finally {
+                pending.running(null);
+            }
+        });
+    }
+
+    /**
+     * 실행 중인 count 쿼리
+     * cancel 하면 작업 스레드를 interrupt 하고, DB 에서 이미 실행 중인 쿼리는 Session.cancelQuery(Statement.cancel)로 멈춘다.
+     * 작업 스레드를 interrupt 하는 것만으로는 JDBC 드라이버가 쿼리를 멈추지 않는다.
+     */
+    public final class PendingCount {
+
+        private final long deadlineNanos;
+        private volatile Future<Long> future;
+        private Session session;
+        private boolean cancelled;
+
+        private PendingCount(long deadlineNanos) {
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        private long remainingMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+        }
+
+        private synchronized void running(Session session) {
+            if (cancelled && session != null) {
+                throw new CancellationException("count query cancelled");
+            }
+            this.session = session;
+        }
+
+        /**
+         * submit 한 시점부터 timeout 이 지날 때까지만 기다린다
+         */
+        public long join() {
+            try {
+                return future.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                cancel();
+                throw new QueryTimeoutException("count query timed out after " + timeoutMillis + "ms");
+            } catch (InterruptedException e) {
+                cancel();
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while waiting for count query", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        public void cancel() {
+            if (future.isDone()) {
+                return;
+            }
+            future.cancel(true);
+            synchronized (this) {
+                cancelled = true;
+                if (session != null) {
+                    try {
+                        session.cancelQuery();
+                    } catch (HibernateException e) {
+                        log.debug("failed to cancel count query", e);
+                    }
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,115 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchKey;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Querydsl 쿼리 실행 시간과 반환 row 수 측정
+ * - querydsl.query (Timer): method, shape, kind(content/count/estimate) 태그
+ * - querydsl.query.rows (DistributionSummary): method, shape 태그
+ * shape 는 MemberSearchCondition 중 어떤 조건이 들어왔는지를 나타낸다 (예: teamName+ageGoe).
+ * 퍼센타일 히스토그램은 management.metrics.distribution 설정으로 켠다.
+ * 태그 조합(method, shape, kind)은 몇십 가지뿐이라 등록한 미터를 맵에 두고 재사용한다.
+ * 매번 builder 로 register 하면 Meter.Id 와 태그 정렬, 레지스트리 조회가 쿼리마다 반복된다.
+ */
+@Component
+public class QueryMetrics {
+
+    public static final String QUERY_TIMER = "querydsl.query";
+    public static final String ROWS_SUMMARY = "querydsl.query.rows";
+    public static final String CONTENT = "content";
+    public static final String COUNT = "count";
+    public static final String ESTIMATE = "estimate";
+    public static final String UNKNOWN_SHAPE = "unknown";
+
+    private static final String[] SHAPE_TAGS = new String[MemberSearchKey.SHAPE_COUNT];
+    private static final String[] FRAGMENT_SHAPE_TAGS = new String[MemberSearchKey.SHAPE_COUNT];
+
+    static {
+        for (int shape = 0; shape < MemberSearchKey.SHAPE_COUNT; shape++) {
+            StringJoiner joiner = new StringJoiner("+");
+            if ((shape & MemberSearchKey.USERNAME) != 0) {
+                joiner.add("username");
+            }
+            if ((shape & MemberSearchKey.TEAM_NAME) != 0) {
+                joiner.add("teamName");
+            }
+            if ((shape & MemberSearchKey.AGE_GOE) != 0) {
+                joiner.add("ageGoe");
+            }
+            if ((shape & MemberSearchKey.AGE_LOE) != 0) {
+                joiner.add("ageLoe");
+            }
+            SHAPE_TAGS[shape] = shape == 0 ? "none" : joiner.toString();
+            FRAGMENT_SHAPE_TAGS[shape] = joiner.add("usernameFragment").toString();
+        }
+    }
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> summaries = new ConcurrentHashMap<>();
+
+    public QueryMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public static String shapeTag(MemberSearchKey key) {
+        return key.hasUsernameFragment() ? FRAGMENT_SHAPE_TAGS[key.shape()] : SHAPE_TAGS[key.shape()];
+    }
+
+    /**
+     * content 쿼리 실행 시간과 반환 row 수를 함께 기록한다
+     */
+    public <T extends Collection<?>> T content(String method, String shape, Supplier<T> query) {
+        T result = time(method, shape, CONTENT, query);
+        rows(method, shape, result.size());
+        return result;
+    }
+
+    public long count(String method, String shape, LongSupplier query) {
+        Timer.Sample sample = Timer.start(registry);
+        try {
+            return query.getAsLong();
+        } finally {
+            sample.stop(timer(method, shape, COUNT));
+        }
+    }
+
+    public <T> T time(String method, String shape, String kind, Supplier<T> query) {
+        Timer.Sample sample = Timer.start(registry);
+        try {
+            return query.get();
+        } finally {
+            sample.stop(timer(method, shape, kind));
+        }
+    }
+
+    public void rows(String method, String shape, long rows) {
+        summaries.computeIfAbsent(method + '|' + shape, key -> DistributionSummary.builder(ROWS_SUMMARY)
+                        .description("rows returned by a Querydsl query")
+                        .baseUnit("rows")
+                        .tag("method", method)
+                        .tag("shape", shape)
+                        .register(registry))
+                .record(rows);
+    }
+
+    private Timer timer(String method, String shape, String kind) {
+        return timers.computeIfAbsent(method + '|' + shape + '|' + kind, key -> Timer.builder(QUERY_TIMER)
+                .description("Querydsl query execution time")
+                .tag("method", method)
+                .tag("shape", shape)
+                .tag("kind", kind)
+                .register(registry));
+    }
+}
@@ -8,6 +8,8 @@ import com.querydsl.jpa.impl.JPAQueryFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.jpa.repository.support.JpaEntityInformation;
 import org.springframework.data.jpa.repository.support.JpaEntityInformationSupport;
 import org.springframework.data.jpa.repository.support.Querydsl;
@@ -24,10 +26,14 @@ import java.util.function.Function;
 @Repository
 public abstract class Querydsl4RepositorySupport {
 
+    private static final String DEFAULT_METRIC_METHOD = "applyPagination";
+
     private final Class domainClass;
     private Querydsl querydsl;
     private EntityManager entityManager;
     private JPAQueryFactory queryFactory;
+    private ParallelCountExecutor parallelCountExecutor;
+    private QueryMetrics queryMetrics;
 
     public Querydsl4RepositorySupport(Class<?> domainClass) {
         Assert.notNull(domainClass, "Domain class must not be null");
@@ -46,11 +52,22 @@ public abstract class Querydsl4RepositorySupport {
         this.queryFactory = new JPAQueryFactory(entityManager);
     }
 
+    @Autowired
+    public void setParallelCountExecutor(ParallelCountExecutor parallelCountExecutor) {
+        this.parallelCountExecutor = parallelCountExecutor;
+    }
+
+    @Autowired
+    public void setQueryMetrics(QueryMetrics queryMetrics) {
+        this.queryMetrics = queryMetrics;
+    }
+
     @PostConstruct
     public void validate() {
         Assert.notNull(entityManager, "EntityManager must not be null");
         Assert.notNull(querydsl, "Querydsl must not be null");
         Assert.notNull(queryFactory, "QueryFactory must not be null");
+        Assert.notNull(queryMetrics, "QueryMetrics must not be null");
     }
 
     protected Querydsl getQuerydsl() {
@@ -65,6 +82,10 @@ public abstract class Querydsl4RepositorySupport {
         return queryFactory;
     }
 
+    protected QueryMetrics getQueryMetrics() {
+        return queryMetrics;
+    }
+
     protected <T> JPAQuery<T> select(Expression<T> expression) {
         return getQueryFactory().select(expression);
     }
@@ -75,20 +96,91 @@ public abstract class Querydsl4RepositorySupport {
 
     protected <T> Page<T> applyPagination(Pageable pageable,
                                           Function<JPAQueryFactory, JPAQuery> contentQuery) {
+        return applyPagination(DEFAULT_METRIC_METHOD, QueryMetrics.UNKNOWN_SHAPE, pageable, contentQuery);
+    }
+
+    protected <T> Page<T> applyPagination(Pageable pageable,
+                                          Function<JPAQueryFactory, JPAQuery> contentQuery, Function<JPAQueryFactory,
+                                                      JPAQuery> countQuery) {
+        return applyPagination(DEFAULT_METRIC_METHOD, QueryMetrics.UNKNOWN_SHAPE, pageable, contentQuery, countQuery);
+    }
+
+    /**
+     * method, shape 는 쿼리 메트릭(QueryMetrics)의 태그로 사용된다
+     */
+    protected <T> Page<T> applyPagination(String method, String shape, Pageable pageable,
+                                          Function<JPAQueryFactory, JPAQuery> contentQuery) {
         JPAQuery jpaQuery = contentQuery.apply(getQueryFactory());
-        List<T> content = getQuerydsl().applyPagination(pageable,
-                jpaQuery).fetch();
+        List<T> content = queryMetrics.content(method, shape,
+                () -> getQuerydsl().applyPagination(pageable, jpaQuery).fetch());
         return PageableExecutionUtils.getPage(content, pageable,
-                jpaQuery::fetchCount);
+                () -> queryMetrics.count(method, shape, jpaQuery::fetchCount));
     }
-    protected <T> Page<T> applyPagination(Pageable pageable,
+
+    protected <T> Page<T> applyPagination(String method, String shape, Pageable pageable,
                                           Function<JPAQueryFactory, JPAQuery> contentQuery, Function<JPAQueryFactory,
                                                       JPAQuery> countQuery) {
+        if (parallelCountExecutor != null && parallelCountExecutor.isEnabled() && pageable.getOffset() > 0) {
+            return applyPaginationInParallel(method, shape, pageable, contentQuery, countQuery);
+        }
+        return applyPaginationInSequence(method, shape, pageable, contentQuery, countQuery);
+    }
+
+    private <T> Page<T> applyPaginationInSequence(String method, String shape, Pageable pageable,
+                                                  Function<JPAQueryFactory, JPAQuery> contentQuery,
+                                                  Function<JPAQueryFactory, JPAQuery> countQuery) {
         JPAQuery jpaContentQuery = contentQuery.apply(getQueryFactory());
-        List<T> content = getQuerydsl().applyPagination(pageable,
-                jpaContentQuery).fetch();
+        List<T> content = queryMetrics.content(method, shape,
+                () -> getQuerydsl().applyPagination(pageable, jpaContentQuery).fetch());
         JPAQuery countResult = countQuery.apply(getQueryFactory());
         return PageableExecutionUtils.getPage(content, pageable,
-                countResult::fetchCount);
+                () -> queryMetrics.count(method, shape, countResult::fetchCount));
+    }
+
+    protected <T> Slice<T> applySlicing(Pageable pageable,
+                                        Function<JPAQueryFactory, JPAQuery> contentQuery) {
+        return applySlicing("applySlicing", QueryMetrics.UNKNOWN_SHAPE, pageable, contentQuery);
+    }
+
+    /**
+     * count 쿼리 없이 pageSize + 1 개를 조회해서 다음 페이지가 있는지만 판단한다
+     */
+    protected <T> Slice<T> applySlicing(String method, String shape, Pageable pageable,
+                                        Function<JPAQueryFactory, JPAQuery> contentQuery) {
+        JPAQuery jpaQuery = contentQuery.apply(getQueryFactory());
+        int pageSize = pageable.getPageSize();
+        List<T> content = queryMetrics.content(method, shape,
+                () -> getQuerydsl().applyPagination(pageable, jpaQuery)
+                        .limit(pageSize + 1)
+                        .fetch());
+
+        boolean hasNext = content.size() > pageSize;
+        if (hasNext) {
+            content = content.subList(0, pageSize);
+        }
+        return new SliceImpl<>(content, pageable, hasNext);
+    }
+
+    /**
+     * count 쿼리를 별도의 읽기 전용 커넥션에서 content 쿼리와 동시에 실행한다
+     * content 는 지금 트랜잭션에서 조회하기 때문에 반환되는 엔티티는 그대로 영속 상태다.
+     * 첫 페이지는 content 가 pageSize 보다 적으면 count 가 필요 없으므로 동시에 실행하지 않고 content 를 본 뒤에 판단한다.
+     * 두 번째 페이지부터는 마지막 페이지일 때만 count 가 필요 없다. 그때는 실행 중인 count 를 취소한다 (ParallelCountExecutor.PendingCount).
+     * 실행기가 가득 차 있으면 순차 실행으로 대신한다.
+     */
+    protected <T> Page<T> applyPaginationInParallel(String method, String shape, Pageable pageable,
+                                                    Function<JPAQueryFactory, JPAQuery> contentQuery,
+                                                    Function<JPAQueryFactory, JPAQuery> countQuery) {
+        ParallelCountExecutor.PendingCount count = parallelCountExecutor.submit(method, shape, countQuery);
+        if (count == null) {
+            return applyPaginationInSequence(method, shape, pageable, contentQuery, countQuery);
+        }
+        try {
+            List<T> content = queryMetrics.content(method, shape,
+                    () -> getQuerydsl().applyPagination(pageable, contentQuery.apply(getQueryFactory())).fetch());
+            return PageableExecutionUtils.getPage(content, pageable, count::join);
+        } finally {
+            count.cancel();
+        }
     }
 }
@@ -0,0 +1,12 @@
+package study.querydsl.repository;
+
+import org.springframework.data.domain.Pageable;
+import study.querydsl.entity.Team;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface TeamRepositoryCustom {
+    Optional<Team> findByName(String name);
+    List<Team> findPageWithMembers(Pageable pageable);
+}
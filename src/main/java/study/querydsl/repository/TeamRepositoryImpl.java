@@ -0,0 +1,62 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.Session;
+import org.springframework.data.domain.Pageable;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+public class TeamRepositoryImpl implements TeamRepositoryCustom {
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+
+    public TeamRepositoryImpl(EntityManager em) {
+        this.em = em;
+        this.queryFactory = new JPAQueryFactory(em);
+    }
+
+    /**
+     * 자연 키(name) 조회
+     * 쿼리 대신 natural id API 를 사용하기 때문에 2차 캐시(NaturalIdCache)에 있으면 DB 에 가지 않는다.
+     */
+    @Override
+    public Optional<Team> findByName(String name) {
+        return em.unwrap(Session.class)
+                .bySimpleNaturalId(Team.class)
+                .loadOptional(name);
+    }
+
+    /**
+     * 팀 한 페이지와 그 팀들의 회원을 쿼리 2번으로 조회한다
+     * 컬렉션 fetch join 에 페이징을 걸면 메모리에서 페이징하므로, 먼저 페이지의 팀 id 만 구하고
+     * 그 id 들에 대해서만 회원을 fetch join 한다. 페이지 크기와 상관없이 쿼리 수는 2번이다.
+     */
+    @Override
+    public List<Team> findPageWithMembers(Pageable pageable) {
+        List<Long> teamIds = queryFactory
+                .select(team.id)
+                .from(team)
+                .orderBy(team.id.asc())
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetch();
+        if (teamIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        return queryFactory
+                .selectFrom(team).distinct()
+                .leftJoin(team.members, member).fetchJoin()
+                .where(team.id.in(teamIds))
+                .orderBy(team.id.asc())
+                .fetch();
+    }
+}
@@ -0,0 +1,220 @@
+package study.querydsl.repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * username 3-gram 역색인
+ * username 을 소문자로 바꾸고 앞에 시작 표시 문자 2개를 붙여서 3글자씩 자른 gram 마다 회원 id 목록(정렬된 int 배열)을 들고 있다.
+ * - contains("mber") : "mbe", "ber" 목록의 교집합
+ * - startsWith("me") : "^^m", "^me" 목록의 교집합 (^ 는 시작 표시)
+ * 교집합은 후보일 뿐이라 실제 일치 여부는 DB 의 like 조건으로 다시 확인한다.
+ * 메모리를 줄이려고 id 를 int 로 저장하므로 Integer.MAX_VALUE 를 넘는 id 는 받지 않는다.
+ */
+public class UsernameNgramIndex {
+
+    static final int GRAM = 3;
+    private static final char START = '\u0002';
+
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private int size;
+
+    public void add(long id, String username) {
+        int memberId = Math.toIntExact(id);
+        long[] grams = grams(anchored(username));
+        lock.writeLock().lock();
+        try {
+            boolean added = false;
+            for (long gram : grams) {
+                added |= postings.computeIfAbsent(gram, g -> new Postings()).add(memberId);
+            }
+            if (added) {
+                size++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id, String username) {
+        int memberId = Math.toIntExact(id);
+        long[] grams = grams(anchored(username));
+        lock.writeLock().lock();
+        try {
+            boolean removed = false;
+            for (long gram : grams) {
+                Postings list = postings.get(gram);
+                if (list != null && list.remove(memberId)) {
+                    removed = true;
+                    if (list.size == 0) {
+                        postings.remove(gram);
+                    }
+                }
+            }
+            if (removed) {
+                size--;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 후보 id 를 오름차순으로 반환한다
+     * 색인으로 좁힐 수 없는 조각(3글자 미만 contains)이거나 후보가 limit 를 넘으면 null 을 반환한다.
+     */
+    public int[] search(String contains, String startsWith, int limit) {
+        List<Long> grams = new ArrayList<>();
+        if (contains != null) {
+            if (contains.length() < GRAM) {
+                return null;
+            }
+            for (long gram : grams(contains.toLowerCase(Locale.ROOT))) {
+                grams.add(gram);
+            }
+        }
+        if (startsWith != null) {
+            for (long gram : grams(anchored(startsWith))) {
+                grams.add(gram);
+            }
+        }
+        if (grams.isEmpty()) {
+            return null;
+        }
+
+        lock.readLock().lock();
+        try {
+            List<Postings> lists = new ArrayList<>(grams.size());
+            for (Long gram : grams) {
+                Postings list = postings.get(gram);
+                if (list == null) {
+                    return new int[0];
+                }
+                lists.add(list);
+            }
+            lists.sort(Comparator.comparingInt(list -> list.size));
+
+            Postings smallest = lists.get(0);
+            int[] result = Arrays.copyOf(smallest.ids, smallest.size);
+            int resultSize = result.length;
+            for (int i = 1; i < lists.size() && resultSize > 0; i++) {
+                resultSize = lists.get(i).retainAll(result, resultSize);
+            }
+            return resultSize > limit ? null : Arrays.copyOf(result, resultSize);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int gramCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 대략적인 힙 사용량 (HashMap 엔트리 + Long 키 + 목록 객체 + int 배열)
+     */
+    public long estimatedBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = 0;
+            for (Postings list : postings.values()) {
+                bytes += 32 + 16 + 24 + 16 + 4L * list.ids.length;
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static String anchored(String username) {
+        return "" + START + START + username.toLowerCase(Locale.ROOT);
+    }
+
+    private static long[] grams(String value) {
+        if (value.length() < GRAM) {
+            return new long[0];
+        }
+        long[] grams = new long[value.length() - GRAM + 1];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = ((long) value.charAt(i) << 32) | ((long) value.charAt(i + 1) << 16) | value.charAt(i + 2);
+        }
+        return grams;
+    }
+
+    /**
+     * 정렬된 회원 id 목록
+     * id 는 시퀀스로 증가하므로 대부분 끝에 붙이기만 한다.
+     */
+    private static final class Postings {
+        private int[] ids = new int[4];
+        private int size;
+
+        private boolean add(int id) {
+            if (size == 0 || ids[size - 1] < id) {
+                ensureCapacity();
+                ids[size++] = id;
+                return true;
+            }
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                return false;
+            }
+            int insertAt = -index - 1;
+            ensureCapacity();
+            System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+            ids[insertAt] = id;
+            size++;
+            return true;
+        }
+
+        private boolean remove(int id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            size--;
+            return true;
+        }
+
+        /**
+         * candidates[0, candidateSize) 중 이 목록에 있는 id 만 앞으로 모으고 남은 개수를 반환한다
+         */
+        private int retainAll(int[] candidates, int candidateSize) {
+            int kept = 0;
+            int from = 0;
+            for (int i = 0; i < candidateSize; i++) {
+                int index = Arrays.binarySearch(ids, from, size, candidates[i]);
+                if (index >= 0) {
+                    candidates[kept++] = candidates[i];
+                    from = index + 1;
+                } else {
+                    from = -index - 1;
+                }
+            }
+            return kept;
+        }
+
+        private void ensureCapacity() {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, ids.length + (ids.length >> 1) + 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package study.querydsl.service;
+
+import java.time.Duration;
+
+/**
+ * 검색 전용 실행기(SearchBulkhead)의 스레드와 대기열이 모두 찬 경우
+ * 컨트롤러는 503 과 Retry-After 로 바로 응답한다.
+ */
+public class BulkheadFullException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public BulkheadFullException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,95 @@
+package study.querydsl.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberJpaRepository;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * 회원 검색 결과를 NDJSON(한 줄에 JSON 하나)으로 스트리밍한다
+ * DB 커서에서 읽은 row 를 바로 출력 스트림에 쓰기 때문에 결과 크기와 상관없이 메모리 사용량이 일정하다.
+ * 출력 스트림에 대한 쓰기는 클라이언트가 읽을 때까지 블로킹되므로, 느린 클라이언트는 DB 읽기도 늦춘다(backpressure).
+ * 스트리밍 응답은 비동기 요청으로 처리되므로 export 엔드포인트만 timeout(querydsl.export.timeout)을 따로 늘린다.
+ */
+@Slf4j
+@Service
+public class MemberExportService {
+
+    private final MemberJpaRepository memberJpaRepository;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter writer;
+    private final int fetchSize;
+    private final int flushRows;
+    private final Duration timeout;
+
+    public MemberExportService(MemberJpaRepository memberJpaRepository,
+                               ObjectMapper objectMapper,
+                               @Value("${querydsl.export.fetch-size:1000}") int fetchSize,
+                               @Value("${querydsl.export.flush-rows:500}") int flushRows,
+                               @Value("${querydsl.export.timeout:30m}") Duration timeout) {
+        if (flushRows < 1) {
+            throw new IllegalArgumentException("querydsl.export.flush-rows must be positive: " + flushRows);
+        }
+        this.memberJpaRepository = memberJpaRepository;
+        this.objectMapper = objectMapper;
+        // 기본 ObjectMapper 는 writeValue 마다 flush 하므로(FLUSH_AFTER_WRITE_VALUE) 끄고 flushRows 마다 직접 flush 한다
+        this.writer = objectMapper.writerFor(MemberTeamDto.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.fetchSize = fetchSize;
+        this.flushRows = flushRows;
+        this.timeout = timeout;
+    }
+
+    @Transactional(readOnly = true)
+    public long exportNdjson(MemberSearchCondition condition, OutputStream out) throws IOException {
+        long rows;
+        try (Stream<MemberTeamDto> stream = memberJpaRepository.streamByMultipleWhere(condition, fetchSize)) {
+            rows = writeNdjson(stream, out);
+        }
+        log.debug("exported {} members", rows);
+        return rows;
+    }
+
+    /**
+     * stream 의 row 를 한 줄씩 out 에 쓰고 쓴 row 수를 반환한다. out 은 닫지 않는다
+     */
+    public long writeNdjson(Stream<MemberTeamDto> stream, OutputStream out) throws IOException {
+        long rows = 0;
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+
+            Iterator<MemberTeamDto> iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                writer.writeValue(generator, iterator.next());
+                generator.writeRaw('\n');
+                if (++rows % flushRows == 0) {
+                    generator.flush();
+                }
+            }
+            generator.flush();
+        }
+        return rows;
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+}
@@ -0,0 +1,441 @@
+package study.querydsl.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import study.querydsl.dto.ImportReport;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.EntityChangedEvent;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * CSV(username,age,teamName) 또는 NDJSON({"username", "age", "teamName"}) 회원 대량 적재
+ * - 요청 스레드는 입력을 한 줄씩 읽어 chunkSize 줄씩 작업 스레드에 넘기기만 한다. 파싱, 검증, insert 는 작업 스레드가 한다.
+ * - 처리 중인 chunk 는 threads + queueCapacity 개로 제한되고, 넘으면 읽기를 멈춘다. 입력 크기와 상관없이 메모리 사용량이 일정하다.
+ * - chunk 하나를 StatelessSession 트랜잭션 하나로 insert 한다. 영속성 컨텍스트 없이 JDBC batch(batchSize)로 묶어서 보낸다.
+ * - 팀 이름은 메모리 캐시에서 찾고, 처음 보는 이름이면 한번만 조회/생성한다.
+ * - 잘못된 줄, insert 에 실패한 chunk 의 줄은 거부 파일에 남긴다.
+ * StatelessSession 은 Hibernate 이벤트를 발행하지 않으므로 적재가 끝나면 EntityChangedEvent(BULK)를 발행한다.
+ */
+@Slf4j
+@Service
+public class MemberImportService {
+
+    public enum Format {
+        CSV, NDJSON
+    }
+
+    private static final int USERNAME_MAX_LENGTH = 255;
+    private static final List<String> CSV_HEADER = List.of("username", "age", "teamname");
+
+    private final SessionFactory sessionFactory;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher publisher;
+    private final ThreadPoolExecutor executor;
+    private final Semaphore slots;
+    private final int chunkSize;
+    private final int batchSize;
+    private final Path directory;
+    private final Map<String, Team> teams = new ConcurrentHashMap<>();
+
+    public MemberImportService(EntityManagerFactory entityManagerFactory,
+                               ObjectMapper objectMapper,
+                               ApplicationEventPublisher publisher,
+                               @Value("${querydsl.import.threads:4}") int threads,
+                               @Value("${querydsl.import.queue-capacity:8}") int queueCapacity,
+                               @Value("${querydsl.import.chunk-size:1000}") int chunkSize,
+                               @Value("${querydsl.import.batch-size:100}") int batchSize,
+                               @Value("${querydsl.import.directory:${java.io.tmpdir}/member-import}") String directory) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        this.objectMapper = objectMapper;
+        this.publisher = publisher;
+        this.chunkSize = chunkSize;
+        this.batchSize = batchSize;
+        this.directory = Paths.get(directory);
+        this.slots = new Semaphore(threads + queueCapacity);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("member-import-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public ImportReport importMembers(InputStream in, Format format) throws IOException {
+        Files.createDirectories(directory);
+        Path rejectFile = Files.createTempFile(directory, "rejects-", ".tsv");
+        long start = System.nanoTime();
+        Progress progress = new Progress();
+
+        try (RejectWriter rejects = new RejectWriter(rejectFile)) {
+            Phaser pending = new Phaser(1);
+            try {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+                List<String> lines = new ArrayList<>(chunkSize);
+                long lineNumber = 0;
+                long firstLine = 1;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    if (lineNumber == 1 && format == Format.CSV && isHeader(line)) {
+                        continue;
+                    }
+                    if (lines.isEmpty()) {
+                        firstLine = lineNumber;
+                    }
+                    lines.add(line);
+                    if (lines.size() == chunkSize) {
+                        submit(format, firstLine, lines, rejects, progress, pending);
+                        lines = new ArrayList<>(chunkSize);
+                    }
+                }
+                if (!lines.isEmpty()) {
+                    submit(format, firstLine, lines, rejects, progress, pending);
+                }
+            } finally {
+                pending.arriveAndAwaitAdvance();
+                afterImport(progress);
+            }
+        }
+
+        if (progress.rejected.sum() == 0) {
+            Files.deleteIfExists(rejectFile);
+        }
+        ImportReport report = new ImportReport(progress.read.sum(), progress.imported.sum(), progress.rejected.sum(),
+                progress.teamsCreated.sum(), (System.nanoTime() - start) / 1_000_000,
+                progress.rejected.sum() == 0 ? null : rejectFile.toString());
+        log.info("member import: {}", report);
+        return report;
+    }
+
+    /**
+     * 팀이 바뀌거나 지워지면 캐시한 팀을 버린다
+     */
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        if (event.isFor(Team.class) && event.getType() != EntityChangedEvent.Type.INSERT) {
+            teams.clear();
+        }
+    }
+
+    private void submit(Format format, long firstLine, List<String> lines, RejectWriter rejects,
+                        Progress progress, Phaser pending) throws InterruptedIOException {
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("import interrupted");
+        }
+        pending.register();
+        try {
+            executor.execute(() -> {
+                try {
+                    importChunk(format, firstLine, lines, rejects, progress);
+                } catch (RuntimeException e) {
+                    log.warn("member import chunk starting at line {} failed", firstLine, e);
+                } finally {
+                    slots.release();
+                    pending.arriveAndDeregister();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            slots.release();
+            pending.arriveAndDeregister();
+            throw e;
+        }
+    }
+
+    private void importChunk(Format format, long firstLine, List<String> lines, RejectWriter rejects, Progress progress) {
+        List<Member> members = new ArrayList<>(lines.size());
+        List<Integer> accepted = new ArrayList<>(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (line.isBlank()) {
+                continue;
+            }
+            progress.read.increment();
+            try {
+                ImportRow row = format == Format.CSV ? parseCsv(line) : parseNdjson(line);
+                Team team = row.getTeamName() == null ? null : team(row.getTeamName(), progress);
+                members.add(Member.ofTeamReference(row.getUsername(), row.getAge(), team));
+                accepted.add(i);
+            } catch (IllegalArgumentException e) {
+                rejects.write(firstLine + i, e.getMessage(), line);
+                progress.rejected.increment();
+            } catch (RuntimeException e) {
+                rejects.write(firstLine + i, "team lookup failed: " + e.getMessage(), line);
+                progress.rejected.increment();
+            }
+        }
+        if (members.isEmpty()) {
+            return;
+        }
+
+        StatelessSession session = sessionFactory.openStatelessSession();
+        try {
+            session.setJdbcBatchSize(batchSize);
+            Transaction tx = session.beginTransaction();
+            try {
+                members.forEach(session::insert);
+                tx.commit();
+                progress.imported.add(members.size());
+            } catch (RuntimeException e) {
+                if (tx.isActive()) {
+                    tx.rollback();
+                }
+                log.warn("member import chunk starting at line {} failed", firstLine, e);
+                for (int i : accepted) {
+                    rejects.write(firstLine + i, "insert failed: " + e.getMessage(), lines.get(i));
+                }
+                progress.rejected.add(accepted.size());
+            }
+        } finally {
+            session.close();
+        }
+    }
+
+    private Team team(String name, Progress progress) {
+        return teams.computeIfAbsent(name, n -> findOrCreateTeam(n, progress));
+    }
+
+    /**
+     * 다른 서버가 같은 이름의 팀을 먼저 만들었다면(unique 제약 위반) 그 팀을 다시 조회한다
+     */
+    private Team findOrCreateTeam(String name, Progress progress) {
+        try {
+            return inTeamTransaction(name, true, progress);
+        } catch (ConstraintViolationException e) {
+            return inTeamTransaction(name, false, progress);
+        }
+    }
+
+    private Team inTeamTransaction(String name, boolean create, Progress progress) {
+        StatelessSession session = sessionFactory.openStatelessSession();
+        try {
+            // batch 로 미루지 않고 insert 시점에 unique 제약 위반을 받는다
+            session.setJdbcBatchSize(1);
+            Transaction tx = session.beginTransaction();
+            try {
+                Team team = session.createQuery("select t from Team t where t.name = :name", Team.class)
+                        .setParameter("name", name)
+                        .uniqueResult();
+                boolean created = false;
+                if (team == null && create) {
+                    team = new Team(name);
+                    session.insert(team);
+                    created = true;
+                }
+                tx.commit();
+                // 커밋이 실패하면 팀은 만들어지지 않은 것이다
+                if (created) {
+                    progress.teamsCreated.increment();
+                }
+                if (team == null) {
+                    throw new IllegalStateException("team not found after unique violation: " + name);
+                }
+                return team;
+            } catch (RuntimeException e) {
+                if (tx.isActive()) {
+                    tx.rollback();
+                }
+                throw e;
+            }
+        } finally {
+            session.close();
+        }
+    }
+
+    private void afterImport(Progress progress) {
+        if (progress.teamsCreated.sum() > 0) {
+            publisher.publishEvent(EntityChangedEvent.bulk(Team.class));
+        }
+        if (progress.imported.sum() > 0) {
+            publisher.publishEvent(EntityChangedEvent.bulk(Member.class));
+        }
+    }
+
+    private ImportRow parseNdjson(String line) {
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(line);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("invalid json: " + e.getOriginalMessage());
+        }
+        if (!node.isObject()) {
+            throw new IllegalArgumentException("expected a json object");
+        }
+        JsonNode age = node.path("age");
+        if (!age.isMissingNode() && !age.isNull() && !age.isIntegralNumber() && !age.isTextual()) {
+            throw new IllegalArgumentException("age must be an integer");
+        }
+        return ImportRow.of(node.path("username").asText(null), age.asText(null), node.path("teamName").asText(null));
+    }
+
+    static ImportRow parseCsv(String line) {
+        List<String> fields = splitCsv(line);
+        if (fields.size() < 2 || fields.size() > 3) {
+            throw new IllegalArgumentException("expected username,age,teamName but got " + fields.size() + " fields");
+        }
+        return ImportRow.of(fields.get(0), fields.get(1), fields.size() == 3 ? fields.get(2) : null);
+    }
+
+    /**
+     * 쉼표로 나눈다. 큰따옴표로 감싼 필드 안의 쉼표와 "" (따옴표 하나)를 처리한다
+     */
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>(3);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quote");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * 첫 줄이 정확히 username,age,teamName 일 때만 헤더로 본다 (대소문자, 앞뒤 공백, UTF-8 BOM 무시)
+     * "username" 으로 시작하는 회원 이름이 첫 줄에 있어도 건너뛰지 않는다.
+     */
+    static boolean isHeader(String line) {
+        String stripped = line.startsWith("\uFEFF") ? line.substring(1) : line;
+        List<String> fields;
+        try {
+            fields = splitCsv(stripped);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return fields.size() == CSV_HEADER.size() && CSV_HEADER.equals(
+                fields.stream().map(field -> field.trim().toLowerCase(Locale.ROOT)).collect(Collectors.toList()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 검증을 마친 한 줄. teamName 이 없으면 팀 없는 회원이다
+     */
+    @Getter
+    static final class ImportRow {
+        private final String username;
+        private final int age;
+        private final String teamName;
+
+        private ImportRow(String username, int age, String teamName) {
+            this.username = username;
+            this.age = age;
+            this.teamName = teamName;
+        }
+
+        static ImportRow of(String username, String age, String teamName) {
+            if (username == null || username.isBlank()) {
+                throw new IllegalArgumentException("username is required");
+            }
+            if (username.trim().length() > USERNAME_MAX_LENGTH) {
+                throw new IllegalArgumentException("username is longer than " + USERNAME_MAX_LENGTH);
+            }
+            int parsedAge;
+            try {
+                parsedAge = Integer.parseInt(age == null ? "" : age.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("age must be an integer: " + age);
+            }
+            if (parsedAge < 0) {
+                throw new IllegalArgumentException("age must not be negative: " + parsedAge);
+            }
+            String team = teamName == null || teamName.isBlank() ? null : teamName.trim();
+            return new ImportRow(username.trim(), parsedAge, team);
+        }
+    }
+
+    private static final class Progress {
+        private final LongAdder read = new LongAdder();
+        private final LongAdder imported = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder teamsCreated = new LongAdder();
+    }
+
+    /**
+     * 거부된 줄을 "줄 번호 \t 사유 \t 원본" 형식으로 남긴다. 여러 작업 스레드가 같이 쓴다
+     */
+    private static final class RejectWriter implements Closeable {
+        private final BufferedWriter writer;
+
+        private RejectWriter(Path file) throws IOException {
+            this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        }
+
+        private synchronized void write(long lineNumber, String reason, String line) {
+            try {
+                writer.write(lineNumber + "\t" + reason.replace('\t', ' ').replace('\n', ' ') + "\t" + line);
+                writer.newLine();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            writer.close();
+        }
+    }
+}
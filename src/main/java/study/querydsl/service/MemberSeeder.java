@@ -0,0 +1,195 @@
+package study.querydsl.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggerConfiguration;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 부하 테스트용 대량 데이터 적재
+ * - JDBC batch insert (hibernate.jdbc.batch_size, order_inserts)
+ * - batchSize 마다 flush/clear 해서 영속성 컨텍스트가 커지지 않게 한다
+ * - commitSize 마다 커밋해서 트랜잭션(undo log)이 커지지 않게 한다
+ * - writers 가 2 이상이면 회원 구간을 나눠서 각자 다른 커넥션으로 동시에 적재한다
+ * 몇 건을 적재하든 메모리에는 batchSize 만큼의 엔티티만 올라간다.
+ * 적재하는 동안에는 SQL 로그(org.hibernate.SQL, org.hibernate.type, p6spy)를 WARN 으로 낮췄다가 끝나면 되돌린다.
+ * 로컬 설정처럼 바인딩 파라미터까지 trace 로 남기면 row 마다 로그가 여러 줄 찍혀서 적재 시간 대부분을 로그가 차지한다.
+ */
+@Slf4j
+@Service
+public class MemberSeeder {
+
+    public enum Distribution {
+        /** 팀마다 같은 수의 회원 */
+        ROUND_ROBIN,
+        /** 팀을 무작위로 고른다 */
+        UNIFORM,
+        /** 앞쪽 팀에 회원이 몰린다 (skew 가 클수록 더 몰린다) */
+        SKEWED
+    }
+
+    private static final String[] SQL_LOGGERS = {"org.hibernate.SQL", "org.hibernate.type", "p6spy"};
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final TransactionTemplate transactionTemplate;
+    private final LoggingSystem loggingSystem;
+    private final int batchSize;
+    private final int commitSize;
+
+    public MemberSeeder(PlatformTransactionManager transactionManager, LoggingSystem loggingSystem,
+                        @Value("${querydsl.seed.batch-size:1000}") int batchSize,
+                        @Value("${querydsl.seed.commit-size:10000}") int commitSize) {
+        if (batchSize < 1 || commitSize < 1) {
+            throw new IllegalArgumentException("querydsl.seed.batch-size and commit-size must be positive");
+        }
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.loggingSystem = loggingSystem;
+        this.batchSize = batchSize;
+        this.commitSize = commitSize;
+    }
+
+    /**
+     * @return 초당 적재한 회원 수
+     */
+    public double seed(long members, int teams, Distribution distribution, double skew, int writers) {
+        if (members < 0 || teams < 1 || writers < 1) {
+            throw new IllegalArgumentException(
+                    "members must not be negative, teams and writers must be positive: "
+                            + members + ", " + teams + ", " + writers);
+        }
+        if (distribution == Distribution.SKEWED && skew <= 0) {
+            throw new IllegalArgumentException("skew must be positive: " + skew);
+        }
+        Map<String, LogLevel> sqlLogLevels = quietSqlLogging();
+        try {
+            return seedAll(members, teams, distribution, skew, writers);
+        } finally {
+            sqlLogLevels.forEach(loggingSystem::setLogLevel);
+        }
+    }
+
+    private double seedAll(long members, int teams, Distribution distribution, double skew, int writers) {
+        long start = System.nanoTime();
+        long[] teamIds = seedTeams(teams);
+
+        AtomicLong written = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            long rangeSize = (members + writers - 1) / writers;
+            for (int writer = 0; writer < writers; writer++) {
+                long from = writer * rangeSize;
+                long to = Math.min(members, from + rangeSize);
+                SplittableRandom random = new SplittableRandom(writer);
+                futures.add(executor.submit(() ->
+                        seedMembers(from, to, teamIds, distribution, skew, random, written, start)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Seeding interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Seeding failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        double rowsPerSecond = rowsPerSecond(written.get(), start);
+        log.info("seeded {} members over {} teams ({} rows/s)", written.get(), teams, Math.round(rowsPerSecond));
+        return rowsPerSecond;
+    }
+
+    /**
+     * @return 바꾸기 전 로거별 설정 레벨 (null 이면 상위 로거를 따른다)
+     */
+    private Map<String, LogLevel> quietSqlLogging() {
+        Map<String, LogLevel> previous = new HashMap<>();
+        for (String name : SQL_LOGGERS) {
+            LoggerConfiguration configuration = loggingSystem.getLoggerConfiguration(name);
+            previous.put(name, configuration == null ? null : configuration.getConfiguredLevel());
+            loggingSystem.setLogLevel(name, LogLevel.WARN);
+        }
+        return previous;
+    }
+
+    private long[] seedTeams(int teams) {
+        long[] teamIds = new long[teams];
+        for (int from = 0; from < teams; from += commitSize) {
+            int start = from;
+            int end = Math.min(teams, from + commitSize);
+            transactionTemplate.executeWithoutResult(status -> {
+                for (int i = start; i < end; i++) {
+                    Team team = new Team("team" + i);
+                    em.persist(team);
+                    teamIds[i] = team.getId();
+                    if ((i + 1) % batchSize == 0) {
+                        em.flush();
+                        em.clear();
+                    }
+                }
+            });
+        }
+        return teamIds;
+    }
+
+    private void seedMembers(long from, long to, long[] teamIds, Distribution distribution, double skew,
+                             SplittableRandom random, AtomicLong written, long start) {
+        for (long chunk = from; chunk < to; chunk += commitSize) {
+            long chunkStart = chunk;
+            long chunkEnd = Math.min(to, chunk + commitSize);
+            transactionTemplate.executeWithoutResult(status -> {
+                for (long i = chunkStart; i < chunkEnd; i++) {
+                    Team team = em.getReference(Team.class, teamIds[teamIndex(i, teamIds.length, distribution, skew, random)]);
+                    em.persist(Member.ofTeamReference("member" + i, random.nextInt(100), team));
+                    if ((i + 1 - chunkStart) % batchSize == 0) {
+                        em.flush();
+                        em.clear();
+                    }
+                }
+            });
+            long total = written.addAndGet(chunkEnd - chunkStart);
+            log.info("seeded {} members ({} rows/s)", total, Math.round(rowsPerSecond(total, start)));
+        }
+    }
+
+    private static int teamIndex(long i, int teams, Distribution distribution, double skew, SplittableRandom random) {
+        switch (distribution) {
+            case ROUND_ROBIN:
+                return (int) (i % teams);
+            case UNIFORM:
+                return random.nextInt(teams);
+            case SKEWED:
+                return Math.min(teams - 1, (int) (teams * Math.pow(random.nextDouble(), skew)));
+            default:
+                throw new IllegalArgumentException("Unknown distribution: " + distribution);
+        }
+    }
+
+    private static double rowsPerSecond(long rows, long startNanos) {
+        double seconds = (System.nanoTime() - startNanos) / 1_000_000_000d;
+        return seconds == 0 ? rows : rows / seconds;
+    }
+}
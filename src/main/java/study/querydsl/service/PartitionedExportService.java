@@ -0,0 +1,255 @@
+package study.querydsl.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.ExportReport;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * member_id 구간을 나눠서 여러 스레드가 동시에 export 한다
+ * 전체 id 범위(min ~ max)를 같은 폭의 구간으로 나누고, 구간마다 별도 읽기 전용 트랜잭션(= 별도 커넥션)에서
+ * searchByMultipleWhere 와 같은 projection 을 id 순으로 읽어서 구간별 NDJSON 파일에 쓴다.
+ * - exportToFiles : 구간별 파일을 남기고 처리량 보고서를 반환한다.
+ * - exportMerged  : 구간 파일을 id 순서대로 이어 붙여 하나의 스트림으로 내보낸다. 앞 구간이 끝나는 대로 바로 흘려보낸다.
+ * id 가 고르게 분포한다고 가정하므로 중간에 크게 비어 있는 구간이 있으면 스레드별 작업량이 치우친다.
+ * 동시에 읽는 스레드 수(threads)는 커넥션 풀 크기보다 작게 잡는다.
+ * 보고서의 파일 경로는 directory 기준 상대 경로다. directory 아래 폴더는 retention 이 지나면 다음 export 때 지운다.
+ * 실행기 큐가 가득 차면 RejectedExecutionException 을 던진다 (컨트롤러는 503 으로 응답한다).
+ */
+@Slf4j
+@Service
+public class PartitionedExportService {
+
+    private final MemberJpaRepository memberJpaRepository;
+    private final MemberExportService memberExportService;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolExecutor executor;
+    private final int threads;
+    private final int maxPartitions;
+    private final Path directory;
+    private final Duration retention;
+
+    public PartitionedExportService(MemberJpaRepository memberJpaRepository,
+                                    MemberExportService memberExportService,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${querydsl.export.partitioned.threads:4}") int threads,
+                                    @Value("${querydsl.export.partitioned.max-partitions:64}") int maxPartitions,
+                                    @Value("${querydsl.export.partitioned.directory:${java.io.tmpdir}/member-export}") String directory,
+                                    @Value("${querydsl.export.partitioned.retention:24h}") Duration retention) {
+        this.memberJpaRepository = memberJpaRepository;
+        this.memberExportService = memberExportService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.threads = threads;
+        this.maxPartitions = maxPartitions;
+        this.directory = Paths.get(directory);
+        this.retention = retention;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxPartitions),
+                new CustomizableThreadFactory("partitioned-export-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public int getMaxPartitions() {
+        return maxPartitions;
+    }
+
+    /**
+     * directory 아래 새 폴더에 구간별 파일(members-0000.ndjson, ...)을 만든다. 실패하면 만들던 폴더는 지운다
+     */
+    public ExportReport exportToFiles(MemberSearchCondition condition, int partitions) throws IOException {
+        purgeExpired();
+        Files.createDirectories(directory);
+        // 같은 시각에 시작한 export 끼리 폴더가 겹치지 않도록 이름을 무작위로 만든다
+        Path target = Files.createTempDirectory(directory, "members-");
+        long start = System.nanoTime();
+        List<Future<ExportReport.Partition>> futures = List.of();
+        List<ExportReport.Partition> results = new ArrayList<>();
+        boolean completed = false;
+        try {
+            futures = submit(condition, partitions, target);
+            for (Future<ExportReport.Partition> future : futures) {
+                results.add(await(future));
+            }
+            completed = true;
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+            if (!completed) {
+                deleteQuietly(target);
+            }
+        }
+        return report(start, results);
+    }
+
+    /**
+     * 구간 파일을 임시 폴더에 쓰고, 앞 구간부터 끝나는 대로 out 에 이어 붙인 뒤 지운다
+     * 결과는 id 오름차순이다.
+     */
+    public ExportReport exportMerged(MemberSearchCondition condition, int partitions, OutputStream out) throws IOException {
+        Files.createDirectories(directory);
+        Path target = Files.createTempDirectory(directory, "merge-");
+        long start = System.nanoTime();
+        List<Future<ExportReport.Partition>> futures = List.of();
+        List<ExportReport.Partition> results = new ArrayList<>();
+        try {
+            futures = submit(condition, partitions, target);
+            for (Future<ExportReport.Partition> future : futures) {
+                ExportReport.Partition partition = await(future);
+                Path file = directory.resolve(partition.getFile());
+                Files.copy(file, out);
+                out.flush();
+                Files.delete(file);
+                results.add(partition);
+            }
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+            deleteQuietly(target);
+        }
+        return report(start, results);
+    }
+
+    private List<Future<ExportReport.Partition>> submit(MemberSearchCondition condition, int partitions, Path target) {
+        if (partitions < 1 || partitions > maxPartitions) {
+            throw new IllegalArgumentException("partitions must be between 1 and " + maxPartitions + ": " + partitions);
+        }
+        long[] idRange = memberJpaRepository.findIdRange();
+        List<long[]> ranges = idRange == null ? List.of() : split(idRange[0], idRange[1], partitions);
+
+        List<Future<ExportReport.Partition>> futures = new ArrayList<>(ranges.size());
+        try {
+            for (int i = 0; i < ranges.size(); i++) {
+                long[] range = ranges.get(i);
+                Path file = target.resolve(String.format("members-%04d.ndjson", i));
+                futures.add(executor.submit(() -> exportPartition(condition, range, file)));
+            }
+        } catch (RuntimeException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw e;
+        }
+        return futures;
+    }
+
+    private ExportReport.Partition exportPartition(MemberSearchCondition condition, long[] range, Path file) {
+        long start = System.nanoTime();
+        Long rows = transactionTemplate.execute(status -> {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file));
+                 Stream<MemberTeamDto> stream = memberJpaRepository.streamByMultipleWhere(
+                         condition, memberExportService.getFetchSize(), range[0], range[1])) {
+                return memberExportService.writeNdjson(stream, out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return new ExportReport.Partition(range[0], range[1], rows == null ? 0 : rows,
+                (System.nanoTime() - start) / 1_000_000, directory.relativize(file).toString());
+    }
+
+    /**
+     * [minId, maxId] 를 같은 폭의 [from, to) 구간 partitions 개로 나눈다. id 가 구간 수보다 적으면 구간도 줄어든다
+     */
+    static List<long[]> split(long minId, long maxId, int partitions) {
+        long span = maxId - minId + 1;
+        int count = (int) Math.min(partitions, span);
+        List<long[]> ranges = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long from = minId + span * i / count;
+            long to = minId + span * (i + 1) / count;
+            ranges.add(new long[]{from, to});
+        }
+        return ranges;
+    }
+
+    private ExportReport report(long start, List<ExportReport.Partition> results) {
+        ExportReport report = new ExportReport(threads, (System.nanoTime() - start) / 1_000_000, results);
+        log.info("partitioned export: {} rows in {} partitions, {} ms, {} rows/s", report.getRows(),
+                results.size(), report.getElapsedMillis(), report.getRowsPerSecond());
+        return report;
+    }
+
+    private static ExportReport.Partition await(Future<ExportReport.Partition> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("export interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * retention 보다 오래된 export 폴더(members-*, 비정상 종료로 남은 merge-*)를 지운다
+     */
+    void purgeExpired() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        Instant expiredBefore = Instant.now().minus(retention);
+        try (Stream<Path> dirs = Files.list(directory)) {
+            dirs.filter(Files::isDirectory)
+                    .filter(dir -> {
+                        String name = dir.getFileName().toString();
+                        return name.startsWith("members-") || name.startsWith("merge-");
+                    })
+                    .filter(dir -> lastModified(dir).isBefore(expiredBefore))
+                    .forEach(PartitionedExportService::deleteQuietly);
+        } catch (IOException e) {
+            log.warn("failed to purge expired exports in {}", directory, e);
+        }
+    }
+
+    private static Instant lastModified(Path dir) {
+        try {
+            return Files.getLastModifiedTime(dir).toInstant();
+        } catch (IOException e) {
+            return Instant.MAX;
+        }
+    }
+
+    private static void deleteQuietly(Path dir) {
+        try (Stream<Path> files = Files.list(dir)) {
+            files.forEach(file -> file.toFile().delete());
+            Files.deleteIfExists(dir);
+        } catch (IOException e) {
+            log.warn("failed to clean up export directory {}", dir, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
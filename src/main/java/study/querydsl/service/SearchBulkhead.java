@@ -0,0 +1,79 @@
+package study.querydsl.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 비동기 검색 엔드포인트 전용 실행기 (bulkhead)
+ * 스레드 수를 커넥션 풀 크기에 맞춰서 DB 를 기다리는 작업이 Tomcat 요청 스레드를 붙잡지 않게 한다.
+ * 대기열까지 가득 차면 기다리지 않고 BulkheadFullException 으로 바로 거절한다.
+ * - querydsl.async.queue.wait (Timer): 대기열에서 기다린 시간, endpoint 태그
+ * - querydsl.async.rejected (Counter): 거절된 요청 수, endpoint 태그
+ * 스프링의 기본 applicationTaskExecutor 를 대신하지 않도록 빈으로 등록하지 않고 직접 소유한다.
+ */
+@Component
+public class SearchBulkhead {
+
+    private final MeterRegistry registry;
+    private final ThreadPoolExecutor executor;
+    private final Duration retryAfter;
+
+    public SearchBulkhead(MeterRegistry registry,
+                          @Value("${querydsl.async.threads:${spring.datasource.hikari.maximum-pool-size:10}}") int threads,
+                          @Value("${querydsl.async.queue-capacity:50}") int queueCapacity,
+                          @Value("${querydsl.async.retry-after:1s}") Duration retryAfter) {
+        this.registry = registry;
+        this.retryAfter = retryAfter;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("search-"),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("querydsl.async.queue.size", executor, e -> e.getQueue().size())
+                .description("search tasks waiting for a thread")
+                .register(registry);
+        Gauge.builder("querydsl.async.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("search tasks running")
+                .register(registry);
+    }
+
+    public <T> CompletableFuture<T> submit(String endpoint, Supplier<T> task) {
+        long enqueuedAt = System.nanoTime();
+        Timer queueWait = Timer.builder("querydsl.async.queue.wait")
+                .description("time a search task waited for a thread")
+                .tag("endpoint", endpoint)
+                .register(registry);
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                queueWait.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+                return task.get();
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            Counter.builder("querydsl.async.rejected")
+                    .description("search tasks rejected because the bulkhead was full")
+                    .tag("endpoint", endpoint)
+                    .register(registry)
+                    .increment();
+            throw new BulkheadFullException("search executor is saturated: " + endpoint, retryAfter);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
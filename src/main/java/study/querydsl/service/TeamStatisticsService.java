@@ -0,0 +1,391 @@
+package study.querydsl.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import study.querydsl.dto.TeamStatisticsDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.EntityChangeEventPublisher;
+import study.querydsl.event.EntityChangedEvent;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 팀별 회원 나이 통계를 group by 쿼리 대신 메모리 카운터로 유지한다
+ * - 커밋된 Member 추가/수정(changeTeam 포함)/삭제 이벤트로 count, sum, 나이별 인원수를 바로 갱신한다.
+ * - min/max 는 나이별 인원수(TreeMap)에서 구하므로 최솟값/최댓값 회원이 빠져도 다시 조회할 필요가 없다.
+ * - 시작할 때, 벌크 연산 후에, 그리고 reconcile-interval 마다 DB 에서 다시 집계한다. 집계 중에 들어온 변경은 새 카운터에 다시 반영한다.
+ * 조회는 팀마다 미리 만들어둔 TeamStatisticsDto 를 꺼내기만 한다. 재집계 결과는 새 View 로 만들어 한번에 바꾸므로 조회가 비어 있는 중간 상태를 보지 않는다.
+ */
+@Slf4j
+@Service
+public class TeamStatisticsService {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final EntityChangeEventPublisher eventPublisher;
+    private final boolean enabled;
+    private final ScheduledExecutorService rebuildExecutor =
+            Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("team-stats-"));
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    private final long reconcileMillis;
+
+    private static final int SNAPSHOT_CHUNK = 1000;
+
+    private final Object lock = new Object();
+    private Map<Long, TeamCounter> counters = new HashMap<>();
+    private volatile View view = new View();
+    private Pending pending;
+    /**
+     * 지금 카운터가 반영하고 있는 마지막 커밋 순번. 이하의 이벤트는 집계에 이미 들어 있다
+     */
+    private long snapshotPoint;
+
+    public TeamStatisticsService(EntityManagerFactory entityManagerFactory,
+                                 EntityChangeEventPublisher eventPublisher,
+                                 @Value("${querydsl.team-stats.enabled:true}") boolean enabled,
+                                 @Value("${querydsl.team-stats.reconcile-interval:10m}") Duration reconcileInterval) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+        this.reconcileMillis = reconcileInterval.toMillis();
+    }
+
+    public List<TeamStatisticsDto> findAll() {
+        List<TeamStatisticsDto> result = new ArrayList<>(view.snapshots.values());
+        result.sort(Comparator.comparing(TeamStatisticsDto::getTeamName, Comparator.nullsLast(Comparator.naturalOrder())));
+        return result;
+    }
+
+    public Optional<TeamStatisticsDto> findByTeamName(String teamName) {
+        View current = view;
+        Long teamId = current.teamIdsByName.get(teamName);
+        return teamId == null ? Optional.empty() : Optional.ofNullable(current.snapshots.get(teamId));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            return;
+        }
+        scheduleRebuild();
+        if (reconcileMillis > 0) {
+            rebuildExecutor.scheduleWithFixedDelay(this::scheduleRebuild,
+                    reconcileMillis, reconcileMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (event.getType() == EntityChangedEvent.Type.BULK) {
+            if (event.isFor(Member.class) || event.isFor(Team.class)) {
+                synchronized (lock) {
+                    if (pending != null) {
+                        pending.consistent = false;
+                    }
+                }
+                scheduleRebuild();
+            }
+            return;
+        }
+        if (event.isFor(Member.class)) {
+            Member member = (Member) event.getEntity();
+            MemberState oldState = MemberState.of((Team) event.getOldValue("team"), (Integer) event.getOldValue("age"));
+            MemberState newState = MemberState.of((Team) event.getNewValue("team"), (Integer) event.getNewValue("age"));
+            synchronized (lock) {
+                if (alreadyIncluded(event)) {
+                    return;
+                }
+                if (pending != null) {
+                    pending.members.put(member.getId(), newState);
+                }
+                memberMoved(oldState, newState);
+            }
+        } else if (event.isFor(Team.class)) {
+            synchronized (lock) {
+                if (alreadyIncluded(event)) {
+                    return;
+                }
+                if (pending != null) {
+                    pending.teams.add(event);
+                }
+                applyTeam(event);
+            }
+        }
+    }
+
+    /**
+     * 집계 스냅샷보다 먼저 커밋됐지만 집계가 끝난 뒤에 도착한 이벤트. 다시 더하면 두 번 세게 된다
+     */
+    private boolean alreadyIncluded(EntityChangedEvent event) {
+        return event.getCommitSequence() != 0 && event.getCommitSequence() <= snapshotPoint;
+    }
+
+    public void scheduleRebuild() {
+        if (enabled && rebuildScheduled.compareAndSet(false, true)) {
+            rebuildExecutor.execute(this::rebuild);
+        }
+    }
+
+    /**
+     * 팀, 나이별 인원수를 한번에 집계해서 카운터 전체를 바꾼다
+     * 집계하는 동안 커밋된 Member 변경은 pending 에 회원별 최종 상태로 모아둔다.
+     * 카운터는 증감값이라 이벤트를 그대로 다시 적용하면 집계가 이미 본 변경을 두 번 더할 수 있다.
+     * 그래서 집계와 같은 스냅샷(REPEATABLE_READ 트랜잭션)에서 그 회원들의 상태를 다시 읽어
+     * 집계가 본 상태를 빼고 최종 상태를 더한다. 집계 중에 벌크 연산이 있었다면 결과를 버리고 다시 집계한다.
+     * 스냅샷 시점의 커밋 순번을 기록해서, 스냅샷보다 먼저 커밋됐지만 교체 뒤에 도착하는 이벤트는 버린다.
+     */
+    void rebuild() {
+        rebuildScheduled.set(false);
+        synchronized (lock) {
+            pending = new Pending();
+        }
+        EntityManager em = entityManagerFactory.createEntityManager();
+        try {
+            em.unwrap(Session.class).setDefaultReadOnly(true);
+            em.getTransaction().begin();
+            em.unwrap(Session.class).doWork(connection ->
+                    connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ));
+            try {
+                long point = eventPublisher.snapshotPoint(() -> em.createQuery(
+                                "select count(m), count(t) from Member m left join m.team t where m.id is null")
+                        .getSingleResult());
+                List<Object[]> rows = em.createQuery("select t.id, t.name, m.age, count(m) from Member m join m.team t"
+                                + " group by t.id, t.name, m.age", Object[].class)
+                        .getResultList();
+                synchronized (lock) {
+                    if (!pending.consistent) {
+                        pending = null;
+                        scheduleRebuild();
+                        return;
+                    }
+                    Map<Long, MemberState> seen = snapshotStates(em, pending.members.keySet());
+                    replace(rows, seen, point);
+                }
+            } finally {
+                em.getTransaction().rollback();
+            }
+        } catch (RuntimeException e) {
+            log.warn("team statistics rebuild failed", e);
+        } finally {
+            synchronized (lock) {
+                pending = null;
+            }
+            em.close();
+        }
+    }
+
+    /**
+     * 집계 스냅샷에서 본 회원 상태. 없는(집계 후에 추가된) 회원은 빠진다
+     */
+    private static Map<Long, MemberState> snapshotStates(EntityManager em, Set<Long> memberIds) {
+        Map<Long, MemberState> states = new HashMap<>();
+        List<Long> ids = new ArrayList<>(memberIds);
+        for (int from = 0; from < ids.size(); from += SNAPSHOT_CHUNK) {
+            em.createQuery("select m.id, t.id, m.age from Member m left join m.team t where m.id in :ids", Object[].class)
+                    .setParameter("ids", ids.subList(from, Math.min(ids.size(), from + SNAPSHOT_CHUNK)))
+                    .getResultList()
+                    .forEach(row -> states.put((Long) row[0], MemberState.ofTeamId((Long) row[1], (Integer) row[2])));
+        }
+        return states;
+    }
+
+    /**
+     * 새 카운터와 View 를 옆에서 다 만든 다음 한번에 바꾼다. 조회는 교체 전이나 후 중 하나만 본다
+     */
+    private void replace(List<Object[]> rows, Map<Long, MemberState> seen, long point) {
+        counters = new HashMap<>();
+        for (Object[] row : rows) {
+            TeamCounter counter = counter((Long) row[0]);
+            counter.name = (String) row[1];
+            counter.add((Integer) row[2], (Long) row[3]);
+        }
+        pending.members.forEach((memberId, finalState) -> {
+            MemberState seenState = seen.get(memberId);
+            if (seenState != null && seenState.teamId != null) {
+                counter(seenState.teamId).add(seenState.age, -1);
+            }
+            if (finalState != null && finalState.teamId != null) {
+                counter(finalState.teamId).add(finalState.age, 1);
+            }
+        });
+        pending.teams.forEach(event -> {
+            Team team = (Team) event.getEntity();
+            if (event.getType() == EntityChangedEvent.Type.DELETE) {
+                counters.remove(team.getId());
+            } else {
+                counter(team.getId()).name = (String) event.getNewValue("name");
+            }
+        });
+        View next = new View();
+        counters.forEach((teamId, counter) -> {
+            if (counter.name != null) {
+                next.teamIdsByName.put(counter.name, teamId);
+            }
+            if (counter.count > 0) {
+                next.snapshots.put(teamId, counter.toDto(teamId));
+            }
+        });
+        view = next;
+        snapshotPoint = point;
+    }
+
+    private void memberMoved(MemberState oldState, MemberState newState) {
+        if (oldState != null && oldState.teamId != null) {
+            memberRemoved(oldState.teamId, oldState.age);
+        }
+        if (newState != null && newState.teamId != null) {
+            memberAdded(newState.teamId, newState.age);
+        }
+    }
+
+    private void applyTeam(EntityChangedEvent event) {
+        Team team = (Team) event.getEntity();
+        if (event.getType() == EntityChangedEvent.Type.DELETE) {
+            teamRemoved(team.getId());
+        } else {
+            teamNamed(team.getId(), (String) event.getNewValue("name"));
+        }
+    }
+
+    void memberAdded(Long teamId, int age) {
+        counter(teamId).add(age, 1);
+        publish(teamId);
+    }
+
+    void memberRemoved(Long teamId, int age) {
+        TeamCounter counter = counters.get(teamId);
+        if (counter == null) {
+            return;
+        }
+        counter.add(age, -1);
+        publish(teamId);
+    }
+
+    void teamNamed(Long teamId, String name) {
+        TeamCounter counter = counter(teamId);
+        if (counter.name != null) {
+            view.teamIdsByName.remove(counter.name);
+        }
+        counter.name = name;
+        if (name != null) {
+            view.teamIdsByName.put(name, teamId);
+        }
+        publish(teamId);
+    }
+
+    void teamRemoved(Long teamId) {
+        TeamCounter counter = counters.remove(teamId);
+        if (counter != null && counter.name != null) {
+            view.teamIdsByName.remove(counter.name);
+        }
+        view.snapshots.remove(teamId);
+    }
+
+    private TeamCounter counter(Long teamId) {
+        return counters.computeIfAbsent(teamId, id -> new TeamCounter());
+    }
+
+    /**
+     * group by 와 같게 회원이 없는 팀은 내보내지 않는다
+     */
+    private void publish(Long teamId) {
+        TeamCounter counter = counters.get(teamId);
+        if (counter == null || counter.count <= 0) {
+            view.snapshots.remove(teamId);
+            return;
+        }
+        view.snapshots.put(teamId, counter.toDto(teamId));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    /**
+     * 회원 한 명의 팀, 나이. 팀이 없거나 삭제된 회원은 통계에 들어가지 않는다
+     */
+    private static final class MemberState {
+        private final Long teamId;
+        private final int age;
+
+        private MemberState(Long teamId, int age) {
+            this.teamId = teamId;
+            this.age = age;
+        }
+
+        private static MemberState of(Team team, Integer age) {
+            return age == null ? null : new MemberState(team == null ? null : team.getId(), age);
+        }
+
+        private static MemberState ofTeamId(Long teamId, Integer age) {
+            return age == null ? null : new MemberState(teamId, age);
+        }
+    }
+
+    /**
+     * 재집계 중에 들어온 변경. members 는 회원 id -> 최종 상태 (삭제되면 null)
+     */
+    private static final class Pending {
+        private final Map<Long, MemberState> members = new LinkedHashMap<>();
+        private final List<EntityChangedEvent> teams = new ArrayList<>();
+        private boolean consistent = true;
+    }
+
+    /**
+     * 조회용 결과. 이벤트는 지금 View 를 고치고, 재집계는 새 View 로 바꾼다
+     */
+    private static final class View {
+        private final Map<Long, TeamStatisticsDto> snapshots = new ConcurrentHashMap<>();
+        private final Map<String, Long> teamIdsByName = new ConcurrentHashMap<>();
+    }
+
+    private static final class TeamCounter {
+        private String name;
+        private long count;
+        private long sum;
+        private final TreeMap<Integer, Long> ages = new TreeMap<>();
+
+        private void add(int age, long delta) {
+            count += delta;
+            sum += age * delta;
+            ages.merge(age, delta, Long::sum);
+            if (ages.get(age) <= 0) {
+                ages.remove(age);
+            }
+        }
+
+        private TeamStatisticsDto toDto(Long teamId) {
+            Integer min = ages.isEmpty() ? null : ages.firstKey();
+            Integer max = ages.isEmpty() ? null : ages.lastKey();
+            return new TeamStatisticsDto(teamId, name, count, sum, min, max);
+        }
+    }
+
+}
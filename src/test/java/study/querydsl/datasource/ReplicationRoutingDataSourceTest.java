@@ -0,0 +1,117 @@
+package study.querydsl.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 두 개의 H2 in-memory DB 를 primary, replica 로 사용한다
+ */
+class ReplicationRoutingDataSourceTest {
+
+    DataSource primary = database("primary");
+    DataSource replica = database("replica");
+
+    @BeforeEach
+    void before() {
+        ReplicationRoutingDataSource.clearPin();
+    }
+
+    @AfterEach
+    void after() {
+        ReplicationRoutingDataSource.clearPin();
+        new JdbcTemplate(primary).execute("drop all objects");
+        new JdbcTemplate(replica).execute("drop all objects");
+    }
+
+    @Test
+    void route() {
+        DataSource dataSource = routing(Duration.ZERO);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+        assertThat(readOnly(dataSource).execute(status -> whoami(jdbcTemplate))).isEqualTo("replica");
+        assertThat(readWrite(dataSource).execute(status -> whoami(jdbcTemplate))).isEqualTo("primary");
+        // 트랜잭션 밖의 호출은 primary
+        assertThat(whoami(jdbcTemplate)).isEqualTo("primary");
+    }
+
+    @Test
+    void pinToPrimaryAfterWrite() {
+        DataSource dataSource = routing(Duration.ofMinutes(1));
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+        assertThat(readOnly(dataSource).execute(status -> whoami(jdbcTemplate))).isEqualTo("replica");
+
+        readWrite(dataSource).executeWithoutResult(status -> jdbcTemplate.update("update node set name = name"));
+        assertThat(readOnly(dataSource).execute(status -> whoami(jdbcTemplate))).isEqualTo("primary");
+
+        ReplicationRoutingDataSource.clearPin();
+        assertThat(readOnly(dataSource).execute(status -> whoami(jdbcTemplate))).isEqualTo("replica");
+    }
+
+    @Test
+    void pinEndsWithRequest() throws Exception {
+        DataSource dataSource = routing(Duration.ofMinutes(1));
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        List<String> readAfterWrite = new ArrayList<>();
+
+        new ReplicationPinFilter().doFilter(new MockHttpServletRequest(), new MockHttpServletResponse(),
+                new MockFilterChain(new HttpServlet() {
+                    @Override
+                    protected void service(HttpServletRequest request, HttpServletResponse response) {
+                        readWrite(dataSource).executeWithoutResult(status -> jdbcTemplate.update("update node set name = name"));
+                        readAfterWrite.add(readOnly(dataSource).execute(status -> whoami(jdbcTemplate)));
+                    }
+                }));
+
+        assertThat(readAfterWrite).containsExactly("primary");
+        // 같은 스레드가 처리하는 다음 요청은 고정되지 않는다
+        assertThat(readOnly(dataSource).execute(status -> whoami(jdbcTemplate))).isEqualTo("replica");
+    }
+
+    private DataSource routing(Duration pinAfterWrite) {
+        return new LazyConnectionDataSourceProxy(new ReplicationRoutingDataSource(primary, List.of(replica),
+                ReplicationRoutingDataSource.Strategy.ROUND_ROBIN, pinAfterWrite));
+    }
+
+    private static TransactionTemplate readOnly(DataSource dataSource) {
+        TransactionTemplate template = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        template.setReadOnly(true);
+        return template;
+    }
+
+    private static TransactionTemplate readWrite(DataSource dataSource) {
+        return new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    private static String whoami(JdbcTemplate jdbcTemplate) {
+        return jdbcTemplate.queryForObject("select name from node", String.class);
+    }
+
+    private static DataSource database(String name) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table if not exists node (name varchar(20))");
+        jdbcTemplate.update("delete from node");
+        jdbcTemplate.update("insert into node values (?)", name);
+        return dataSource;
+    }
+}
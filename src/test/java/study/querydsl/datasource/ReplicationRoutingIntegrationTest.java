@@ -0,0 +1,78 @@
+package study.querydsl.datasource;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberRepository;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 실제 경로(JpaTransactionManager + LazyConnectionDataSourceProxy + ReplicationRoutingDataSource)로 라우팅을 확인한다
+ * replica(replica-0)는 in-memory H2 이고 primary 에 없는 회원을 하나 넣어둔다. 그 회원이 보이면 replica-0 에서 읽은 것이다.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.open-in-view=false",
+        "querydsl.datasource.replication.enabled=true",
+        "querydsl.datasource.replication.pin-after-write=0s",
+        "querydsl.datasource.replication.replicas[0].url=" + ReplicationRoutingIntegrationTest.REPLICA_URL,
+        "querydsl.datasource.replication.replicas[0].username=sa",
+        "querydsl.datasource.replication.replicas[0].password="
+})
+class ReplicationRoutingIntegrationTest {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:replication-it;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_ONLY = "replica-" + UUID.randomUUID();
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @BeforeAll
+    static void createReplica() {
+        JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+        replica.execute("create table team (team_id bigint primary key, name varchar(255))");
+        replica.execute("create table member (member_id bigint primary key, username varchar(255),"
+                + " age integer not null, team_id bigint)");
+        replica.update("insert into member (member_id, username, age, team_id) values (?, ?, ?, null)",
+                -1L, REPLICA_ONLY, 10);
+    }
+
+    @AfterAll
+    static void dropReplica() {
+        new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", "")).execute("drop all objects");
+    }
+
+    @Test
+    void readOnlyRepositoryCallUsesReplica() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername(REPLICA_ONLY);
+
+        // searchPageSimple 은 @Transactional(readOnly = true)
+        Page<MemberTeamDto> page = memberRepository.searchPageSimple(condition, PageRequest.of(0, 10));
+
+        assertThat(page.getContent()).extracting("username").containsExactly(REPLICA_ONLY);
+        assertThat(page.getTotalElements()).isEqualTo(1);
+    }
+
+    @Test
+    void writeTransactionUsesPrimary() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        assertThat(tx.execute(status -> memberRepository.findByUsername(REPLICA_ONLY))).isEmpty();
+    }
+}
@@ -0,0 +1,55 @@
+package study.querydsl.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+class MemberTeamColumnsTest {
+
+    @Test
+    void columnsGrowAndEncodeTeamNames() {
+        MemberTeamColumns.Builder builder = MemberTeamColumns.builder();
+        for (int i = 0; i < 100; i++) {
+            builder.add(i + 1, "member" + i, i, i % 3 == 0 ? null : (long) i % 3, i % 3 == 0 ? null : "team" + i % 3);
+        }
+        MemberTeamColumns columns = builder.build();
+
+        assertThat(columns.size()).isEqualTo(100);
+        assertThat(columns.memberId(99)).isEqualTo(100);
+        assertThat(columns.username(99)).isEqualTo("member99");
+        assertThat(columns.age(99)).isEqualTo(99);
+        assertThat(columns.teamNameDictionary()).containsExactly("team1", "team2");
+
+        // 팀이 없는 회원
+        assertThat(columns.teamId(0)).isEqualTo(MemberTeamColumns.NO_TEAM);
+        assertThat(columns.teamNameCode(0)).isEqualTo(-1);
+        assertThat(columns.teamName(0)).isNull();
+        assertThat(columns.row(0).getTeamId()).isNull();
+
+        assertThat(columns.teamNameCode(1)).isEqualTo(columns.teamNameCode(4));
+        assertThat(columns.teamName(4)).isEqualTo("team1");
+    }
+
+    @Test
+    void rowsAndDtos() {
+        MemberTeamColumns columns = MemberTeamColumns.builder()
+                .add(1, "member1", 10, 1L, "teamA")
+                .add(2, "member2", 20, null, null)
+                .build();
+
+        List<MemberTeamDto> dtos = new ArrayList<>();
+        columns.forEach(row -> dtos.add(row.toDto()));
+
+        assertThat(dtos).extracting("memberId", "username", "age", "teamId", "teamName")
+                .containsExactly(
+                        tuple(1L, "member1", 10, 1L, "teamA"),
+                        tuple(2L, "member2", 20, null, null));
+        assertThat(columns.row(1).getUsername()).isEqualTo("member2");
+        assertThatThrownBy(() -> columns.row(2)).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+}
@@ -0,0 +1,75 @@
+package study.querydsl.entity;
+
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.type.LongType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * DB 에 연결하지 않는 서비스 레지스트리로 생성기 설정만 확인한다
+ * 스프링 컨텍스트를 다른 allocation size 로 띄우면 공유 DB 의 시퀀스 increment 가 바뀌어서 다른 테스트의 식별자가 겹친다.
+ */
+class ConfigurableSequenceGeneratorTest {
+
+    static final String SETTING = "querydsl.id.team.allocation-size";
+
+    StandardServiceRegistry registry;
+
+    @AfterEach
+    void destroy() {
+        if (registry != null) {
+            StandardServiceRegistryBuilder.destroy(registry);
+        }
+    }
+
+    @Test
+    void settingOverridesAnnotation() {
+        registry = registry("7");
+
+        SequenceStyleGenerator generator = configure();
+
+        assertThat(generator.getOptimizer()).isInstanceOf(LockFreePooledLoOptimizer.class);
+        assertThat(generator.getOptimizer().getIncrementSize()).isEqualTo(7);
+        assertThat(generator.getDatabaseStructure().getIncrementSize()).isEqualTo(7);
+    }
+
+    @Test
+    void annotationValueWithoutSetting() {
+        registry = registry(null);
+
+        SequenceStyleGenerator generator = configure();
+
+        assertThat(generator.getOptimizer().getIncrementSize()).isEqualTo(50);
+        assertThat(generator.getDatabaseStructure().getIncrementSize()).isEqualTo(50);
+    }
+
+    private SequenceStyleGenerator configure() {
+        Properties params = new Properties();
+        params.setProperty(SequenceStyleGenerator.SEQUENCE_PARAM, "team_seq");
+        params.setProperty(SequenceStyleGenerator.INCREMENT_PARAM, "50");
+        params.setProperty(SequenceStyleGenerator.OPT_PARAM, LockFreePooledLoOptimizer.class.getName());
+        params.setProperty(ConfigurableSequenceGenerator.INCREMENT_SETTING_PARAM, SETTING);
+
+        ConfigurableSequenceGenerator generator = new ConfigurableSequenceGenerator();
+        generator.configure(LongType.INSTANCE, params, registry);
+        return generator;
+    }
+
+    private static StandardServiceRegistry registry(String allocationSize) {
+        StandardServiceRegistryBuilder builder = new StandardServiceRegistryBuilder()
+                .applySetting(AvailableSettings.DIALECT, H2Dialect.class.getName())
+                .applySetting("hibernate.temp.use_jdbc_metadata_defaults", false);
+        if (allocationSize != null) {
+            builder.applySetting(SETTING, allocationSize);
+        }
+        return builder.build();
+    }
+}
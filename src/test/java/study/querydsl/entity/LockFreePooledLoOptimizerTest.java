@@ -0,0 +1,89 @@
+package study.querydsl.entity;
+
+import org.hibernate.id.IdentifierGeneratorHelper;
+import org.hibernate.id.IntegralDataTypeHolder;
+import org.hibernate.id.enhanced.AccessCallback;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LockFreePooledLoOptimizerTest {
+
+    static final int INCREMENT = 50;
+    static final int THREADS = 8;
+    static final int IDS_PER_THREAD = 12_500;
+
+    @Test
+    void uniqueAndGapFreeAcrossThreads() throws Exception {
+        LockFreePooledLoOptimizer optimizer = new LockFreePooledLoOptimizer(Long.class, INCREMENT);
+        Sequence sequence = new Sequence();
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < IDS_PER_THREAD; i++) {
+                        ids.add((Long) optimizer.generate(sequence));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // 블록은 다 쓴 뒤에만 새로 가져오므로 100000 개는 시퀀스 2000 번, 1 ~ 100000 빈 곳 없이 채워진다
+        int total = THREADS * IDS_PER_THREAD;
+        assertThat(ids).hasSize(total);
+        assertThat(sequence.calls).hasValue(total / INCREMENT);
+        assertThat(ids.stream().mapToLong(Long::longValue).min()).hasValue(1);
+        assertThat(ids.stream().mapToLong(Long::longValue).max()).hasValue(total);
+        assertThat(optimizer.getLastSourceValue().makeValue().longValue()).isEqualTo(total - INCREMENT + 1);
+    }
+
+    @Test
+    void integerIdentifier() {
+        LockFreePooledLoOptimizer optimizer = new LockFreePooledLoOptimizer(Integer.class, INCREMENT);
+
+        assertThat(optimizer.generate(new Sequence())).isEqualTo(1);
+    }
+
+    /**
+     * pooled-lo 용 시퀀스: 1 에서 시작해서 INCREMENT 씩 증가한다
+     */
+    static class Sequence implements AccessCallback {
+        final AtomicLong next = new AtomicLong(1);
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public IntegralDataTypeHolder getNextValue() {
+            calls.incrementAndGet();
+            return IdentifierGeneratorHelper.getIntegralDataTypeHolder(Long.class)
+                    .initialize(next.getAndAdd(INCREMENT));
+        }
+
+        @Override
+        public String getTenantIdentifier() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package study.querydsl.monitoring;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class NPlusOneDetectorTest {
+
+    NPlusOneDetector detector = new NPlusOneDetector(true, 3, NPlusOneDetector.Mode.THROW);
+
+    @AfterEach
+    void tearDown() {
+        detector.end();
+    }
+
+    @Test
+    void normalize() {
+        String first = NPlusOneDetector.normalize("/* load Team */ select team0_.team_id from team team0_ where team0_.team_id=1");
+        String second = NPlusOneDetector.normalize("select team0_.team_id   from team team0_\n where team0_.team_id=25");
+
+        assertThat(first).isEqualTo(second);
+        assertThat(NPlusOneDetector.normalize("select * from member where name in ('a', 'b', 'c')"))
+                .isEqualTo("select * from member where name in (?)");
+    }
+
+    @Test
+    void detectRepeatedSelect() {
+        detector.begin();
+        for (int i = 1; i <= 3; i++) {
+            detector.record("select team0_.name from team team0_ where team0_.team_id=" + i);
+        }
+
+        assertThatThrownBy(() -> detector.record("select team0_.name from team team0_ where team0_.team_id=4"))
+                .isInstanceOf(NPlusOneException.class);
+    }
+
+    @Test
+    void ignoreOutsideUnitOfWorkAndWrites() {
+        for (int i = 0; i < 10; i++) {
+            detector.record("select team0_.name from team team0_ where team0_.team_id=" + i);
+        }
+
+        // 작업 단위 밖의 select 는 작업 단위를 만들지 않는다
+        assertThat(detector.begin()).isTrue();
+        assertThatCode(() -> {
+            for (int i = 0; i < 10; i++) {
+                detector.record("insert into member (age, team_id, username, member_id) values (?, ?, ?, ?)");
+            }
+        }).doesNotThrowAnyException();
+    }
+}
@@ -0,0 +1,46 @@
+package study.querydsl.monitoring;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class NPlusOneInterceptorTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    NPlusOneDetector detector;
+
+    @AfterEach
+    void tearDown() {
+        detector.end();
+    }
+
+    @Test
+    void asyncHandlerEndsUnitOfWorkOnRequestThread() throws Exception {
+        MvcResult result = mockMvc.perform(get("/async/v1/members").param("username", "nobody"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // 요청 스레드에 작업 단위가 남아 있으면 begin() 이 false 를 반환한다
+        assertThat(detector.begin()).isTrue();
+        detector.end();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+        assertThat(detector.begin()).isTrue();
+    }
+}
@@ -0,0 +1,89 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+@SpringBootTest
+@Transactional
+class MemberBulkRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberBulkRepository memberBulkRepository;
+
+    @Test
+    void updateInChunks() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        Member member1 = new Member("member1", 10, teamA);
+        Member member2 = new Member("member2", 20, teamA);
+        Member member3 = new Member("member3", 15, teamA);
+        em.persist(member1);
+        em.persist(member2);
+        em.persist(member3);
+
+        List<Long> progress = new ArrayList<>();
+        long count = memberBulkRepository.updateInChunks(member.age.lt(20),
+                update -> update.set(member.username, "비회원"),
+                BulkOptions.builder()
+                        .chunkSize(1)
+                        .progressListener(p -> progress.add(p.getAffectedRows()))
+                        .build());
+
+        assertThat(count).isEqualTo(2);
+        assertThat(progress).isNotEmpty();
+        assertThat(progress.get(progress.size() - 1)).isEqualTo(2);
+
+        // 영속성 컨텍스트가 비워졌기 때문에 DB 의 값을 다시 읽는다
+        Member findMember = em.find(Member.class, member1.getId());
+        assertThat(findMember.getUsername()).isEqualTo("비회원");
+    }
+
+    @Test
+    void skipEmptyChunks() {
+        Member first = new Member("first", 77);
+        em.persist(first);
+        for (int i = 0; i < 50; i++) {
+            em.persist(new Member("filler" + i, 10));
+        }
+        Member last = new Member("last", 77);
+        em.persist(last);
+
+        List<Long> chunks = new ArrayList<>();
+        long count = memberBulkRepository.updateInChunks(member.age.eq(77),
+                update -> update.set(member.age, 78),
+                BulkOptions.builder()
+                        .chunkSize(1)
+                        .progressListener(p -> chunks.add(p.getLastId()))
+                        .build());
+
+        // 사이의 빈 구간 50개는 실행하지 않는다
+        assertThat(count).isEqualTo(2);
+        assertThat(chunks).containsExactly(first.getId(), last.getId());
+    }
+
+    @Test
+    void deleteInChunks() {
+        em.persist(new Member("member1", 10));
+        em.persist(new Member("member2", 20));
+        em.persist(new Member("member3", 30));
+
+        long count = memberBulkRepository.deleteInChunks(member.age.gt(18),
+                BulkOptions.builder().chunkSize(2).build());
+
+        assertThat(count).isEqualTo(2);
+    }
+}
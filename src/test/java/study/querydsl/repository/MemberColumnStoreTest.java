@@ -0,0 +1,116 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberSearchKey;
+import study.querydsl.dto.TeamStatisticsDto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.assertj.core.api.Assertions.tuple;
+
+class MemberColumnStoreTest {
+
+    ForkJoinPool pool = new ForkJoinPool(4);
+    // segment 를 작게 잡아서 여러 segment 로 나뉘고 합쳐지는 경로를 탄다
+    MemberColumnStore store = new MemberColumnStore(4, pool);
+
+    @AfterEach
+    void after() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void aggregate() {
+        store.teamNamed(1L, "teamA");
+        store.teamNamed(2L, "teamB");
+        for (int i = 1; i <= 100; i++) {
+            store.upsert(i, i, i % 2 == 0 ? 1L : 2L, "member" + i);
+        }
+
+        assertThat(store.segmentCount()).isEqualTo(25);
+        assertThat(store.count(key(null, null, null))).isEqualTo(100);
+        assertThat(store.count(key("teamA", 10, 20))).isEqualTo(6);
+        assertThat(store.ageHistogram(key(null, null, 29), 10))
+                .containsExactly(entry(0, 9L), entry(10, 10L), entry(20, 10L));
+        assertThat(store.agePercentiles(key(null, null, null), 50, 99))
+                .containsExactly(entry(50.0, 50), entry(99.0, 99));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsernameStartsWith("MEMBER9");
+        assertThat(store.count(MemberSearchKey.of(condition))).isEqualTo(11);
+
+        assertThat(store.teamBreakdown(key(null, 91, null)))
+                .extracting(TeamStatisticsDto::getTeamName, TeamStatisticsDto::getCount, TeamStatisticsDto::getMax)
+                .containsExactlyInAnyOrder(
+                        tuple("teamA", 5L, 100),
+                        tuple("teamB", 5L, 99));
+    }
+
+    @Test
+    void incrementalChanges() {
+        store.teamNamed(1L, "teamA");
+        for (int i = 1; i <= 10; i++) {
+            store.upsert(i * 10, 20, 1L, "member" + i);
+        }
+
+        // id 순서가 뒤바뀐 insert 는 해당 segment 에 끼워 넣는다
+        for (int i = 1; i <= 10; i++) {
+            store.upsert(i * 10 - 5, 30, null, "late" + i);
+        }
+        store.upsert(10, 40, 1L, "member1");
+        store.remove(100);
+        store.remove(999);
+
+        assertThat(store.size()).isEqualTo(19);
+        assertThat(store.count(key("teamA", 40, null))).isEqualTo(1);
+        assertThat(store.count(key(null, 30, 30))).isEqualTo(10);
+        assertThat(store.count(key("teamX", null, null))).isZero();
+    }
+
+    @Test
+    void usernameFragmentUsesCandidates() {
+        List<MemberSearchKey> asked = new ArrayList<>();
+        MemberColumnStore indexed = new MemberColumnStore(4, pool, key -> {
+            asked.add(key);
+            return List.of(3L, 30L, 999L);
+        });
+        for (int i = 1; i <= 40; i++) {
+            indexed.upsert(i, i, null, "member" + i);
+        }
+
+        MemberSearchCondition contains = new MemberSearchCondition();
+        contains.setUsernameContains("MBER3");
+        // 사전 전체가 아니라 후보(3, 30)의 username 만 확인한다
+        assertThat(indexed.count(MemberSearchKey.of(contains))).isEqualTo(2);
+        assertThat(asked).hasSize(1);
+
+        MemberSearchCondition exact = new MemberSearchCondition();
+        exact.setUsername("member31");
+        assertThat(indexed.count(MemberSearchKey.of(exact))).isEqualTo(1);
+        assertThat(asked).hasSize(1);
+    }
+
+    @Test
+    void estimatedBytesIncludesUsernameDictionary() {
+        for (int i = 1; i <= 1000; i++) {
+            store.upsert(i, 20, null, String.format("member%07d", i));
+        }
+
+        // 컬럼만 세면 행마다 24 바이트 남짓이다
+        assertThat(store.estimatedBytes()).isGreaterThan(1000L * (24 + 100));
+    }
+
+    private MemberSearchKey key(String teamName, Integer ageGoe, Integer ageLoe) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName(teamName);
+        condition.setAgeGoe(ageGoe);
+        condition.setAgeLoe(ageLoe);
+        return MemberSearchKey.of(condition);
+    }
+}
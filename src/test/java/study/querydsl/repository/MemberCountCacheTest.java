@@ -0,0 +1,118 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberSearchKey;
+import study.querydsl.entity.Team;
+import study.querydsl.event.EntityChangedEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MemberCountCacheTest {
+
+    static final String SECRET = "count-cache-test-secret-0123456789abcdef";
+
+    MemberCountCache countCache = new MemberCountCache(Duration.ofMinutes(1), SECRET);
+    AtomicInteger queries = new AtomicInteger();
+
+    @Test
+    void cacheHitAndInvalidate() {
+        MemberSearchKey key = key("teamA");
+
+        assertThat(countCache.count(key, null, countQuery(3))).isEqualTo(3);
+        assertThat(countCache.count(key, null, countQuery(3))).isEqualTo(3);
+        assertThat(queries).hasValue(1);
+
+        countCache.onEntityChanged(EntityChangedEvent.bulk(Team.class));
+        assertThat(countCache.count(key, null, countQuery(4))).isEqualTo(4);
+        assertThat(queries).hasValue(2);
+    }
+
+    @Test
+    void tokenSkipsCountQuery() {
+        MemberSearchKey key = key("teamA");
+        String token = countCache.issueToken(key, 7);
+
+        assertThat(countCache.count(key, token, countQuery(3))).isEqualTo(7);
+        assertThat(queries).hasValue(0);
+    }
+
+    @Test
+    void tokenForAnotherConditionIsRejected() {
+        String token = countCache.issueToken(key("teamA"), 7);
+
+        assertThat(countCache.count(key("teamB"), token, countQuery(3))).isEqualTo(3);
+        assertThat(queries).hasValue(1);
+    }
+
+    @Test
+    void tamperedTokenIsRejected() {
+        MemberSearchKey key = key("teamA");
+        String token = countCache.issueToken(key, 7);
+        String[] parts = token.split("\\.");
+        String payload = new String(Base64.getUrlDecoder().decode(parts[0]), StandardCharsets.UTF_8);
+        String forged = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(payload.replaceFirst("^7:", "1:").getBytes(StandardCharsets.UTF_8))
+                + "." + parts[1];
+
+        assertThat(countCache.count(key, forged, countQuery(3))).isEqualTo(3);
+        assertThat(countCache.count(key("teamC"), "not-a-token", countQuery(5))).isEqualTo(5);
+        assertThat(queries).hasValue(2);
+    }
+
+    @Test
+    void tokenIsRejectedAfterInvalidation() {
+        MemberSearchKey key = key("teamA");
+        String token = countCache.issueToken(key, 7);
+
+        countCache.invalidateAll();
+
+        assertThat(countCache.count(key, token, countQuery(3))).isEqualTo(3);
+        assertThat(queries).hasValue(1);
+    }
+
+    @Test
+    void tokenFromInstanceWithSameSecretIsAccepted() {
+        MemberSearchKey key = key("teamA");
+        String token = new MemberCountCache(Duration.ofMinutes(1), SECRET).issueToken(key, 7);
+
+        assertThat(countCache.count(key, token, countQuery(3))).isEqualTo(7);
+        assertThat(queries).hasValue(0);
+    }
+
+    @Test
+    void tokenSignedWithAnotherSecretIsRejected() {
+        MemberSearchKey key = key("teamA");
+        String other = new MemberCountCache(Duration.ofMinutes(1), SECRET.replace('0', '1')).issueToken(key, 7);
+        String random = new MemberCountCache(Duration.ofMinutes(1), "").issueToken(key, 7);
+
+        assertThat(countCache.count(key, other, countQuery(3))).isEqualTo(3);
+        assertThat(countCache.count(key, random, countQuery(3))).isEqualTo(3);
+    }
+
+    @Test
+    void shortSecretIsRejected() {
+        assertThatThrownBy(() -> new MemberCountCache(Duration.ofMinutes(1), "short"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private LongSupplier countQuery(long total) {
+        return () -> {
+            queries.incrementAndGet();
+            return total;
+        };
+    }
+
+    private static MemberSearchKey key(String teamName) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName(teamName);
+        return MemberSearchKey.of(condition);
+    }
+}
@@ -0,0 +1,47 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.OptionalLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemberCountEstimatorTest {
+
+    @Test
+    void extrapolate() {
+        // 구간 10개 x 1000명, 구간마다 50% -> 1200만 중 600만, 구간 사이 편차가 없다
+        OptionalLong estimate = MemberCountEstimator.extrapolate(12_000_000, filled(10, 1000), filled(10, 500),
+                100_000, 0.05);
+
+        assertThat(estimate).hasValue(6_000_000);
+    }
+
+    @Test
+    void fallbackWhenBelowThreshold() {
+        // 표본 10000 명 중 5명 -> 6천명, 정확한 count 가 충분히 싸다
+        long[] matches = new long[10];
+        Arrays.fill(matches, 0, 5, 1);
+        assertThat(MemberCountEstimator.extrapolate(12_000_000, filled(10, 1000), matches, 100_000, 0.05)).isEmpty();
+    }
+
+    @Test
+    void fallbackWhenRangesDisagree() {
+        // 전체 비율은 50% 지만 구간마다 0% 또는 100% (가입 시기에 몰린 조건) -> 오차 약 ±65% 라서 한계를 넘는다
+        long[] matches = {1000, 0, 1000, 0, 1000, 0, 1000, 0, 1000, 0};
+        assertThat(MemberCountEstimator.extrapolate(12_000_000, filled(10, 1000), matches, 0, 0.05)).isEmpty();
+    }
+
+    @Test
+    void fallbackWhenSampleIsEmpty() {
+        assertThat(MemberCountEstimator.extrapolate(12_000_000, filled(10, 0), filled(10, 0), 0, 0.05)).isEmpty();
+        assertThat(MemberCountEstimator.extrapolate(12_000_000, filled(1, 1000), filled(1, 500), 0, 0.05)).isEmpty();
+    }
+
+    private static long[] filled(int ranges, long value) {
+        long[] values = new long[ranges];
+        Arrays.fill(values, value);
+        return values;
+    }
+}
@@ -11,6 +11,7 @@ import study.querydsl.entity.Team;
 
 import javax.persistence.EntityManager;
 import java.util.List;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -79,4 +80,24 @@ class MemberJpaRepositoryTest {
 
         assertThat(result).extracting("username").containsExactly("member4");
     }
-}
\ No newline at end of file
+
+    @Test
+    void searchByUsernameFragment() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("remember", 20, teamA));
+        em.persist(new Member("other", 30, teamA));
+
+        MemberSearchCondition contains = new MemberSearchCondition();
+        contains.setUsernameContains("MEMBER");
+        assertThat(memberJpaRepository.searchByBuilder(contains)).extracting("username")
+                .containsExactlyInAnyOrder("member1", "remember");
+
+        MemberSearchCondition startsWith = new MemberSearchCondition();
+        startsWith.setUsernameStartsWith("rem");
+        try (Stream<MemberTeamDto> stream = memberJpaRepository.streamByMultipleWhere(startsWith, 100)) {
+            assertThat(stream).extracting("username").containsExactly("remember");
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberSearchKey;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.SearchPage;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * estimate=true 여도 유효한 totalToken, 캐시된 count 가 있으면 추정하지 않고 정확한 값을 쓴다
+ * 테이블 row 수 통계를 100만으로 고정해서 조건 없는 검색이 항상 추정되게 한다.
+ */
+@SpringBootTest(properties = {
+        "querydsl.count-estimate.row-count-sql=select 1000000",
+        "querydsl.count-estimate.exact-threshold=0",
+        "querydsl.count-cache.ttl=1m"
+})
+@Transactional
+class MemberPageEstimateTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    MemberCountCache countCache;
+
+    @Test
+    void exactTotalWinsOverEstimate() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamA));
+        MemberSearchCondition all = new MemberSearchCondition();
+        PageRequest firstPage = PageRequest.of(0, 2);
+
+        SearchPage<MemberTeamDto> estimated = memberRepository.searchPageComplex(all, firstPage, null, true);
+        assertThat(estimated.isTotalExact()).isFalse();
+        assertThat(estimated.getTotalElements()).isEqualTo(1_000_000);
+
+        String token = countCache.issueToken(MemberSearchKey.of(all), 3);
+        SearchPage<MemberTeamDto> fromToken = memberRepository.searchPageComplex(all, firstPage, token, true);
+        assertThat(fromToken.isTotalExact()).isTrue();
+        assertThat(fromToken.getTotalElements()).isEqualTo(3);
+
+        // 정확한 count 가 캐시되면 토큰이 없어도 추정하지 않는다
+        memberRepository.searchPageComplex(all, firstPage, null, false);
+        SearchPage<MemberTeamDto> fromCache = memberRepository.searchPageComplex(all, firstPage, null, true);
+        assertThat(fromCache.isTotalExact()).isTrue();
+        assertThat(fromCache.getTotalElements()).isEqualTo(3);
+    }
+}
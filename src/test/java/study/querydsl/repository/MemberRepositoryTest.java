@@ -5,19 +5,29 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.CursorSlice;
+import study.querydsl.dto.MemberCursor;
 import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamColumns;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.SearchPage;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static study.querydsl.entity.QMember.member;
 
-@SpringBootTest
+/**
+ * 롤백되는 데이터로 센 count 가 다른 테스트에 남지 않도록 count 캐시를 끈다
+ */
+@SpringBootTest(properties = "querydsl.count-cache.ttl=0s")
 @Transactional
 class MemberRepositoryTest {
 
@@ -92,6 +102,115 @@ class MemberRepositoryTest {
         assertThat(result.getContent()).extracting("username").containsExactly("member1", "member2", "member3");
     }
 
+    @Test
+    void searchPageEstimateFallsBackToExact() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+
+        // exact-threshold 보다 작은 테이블은 추정하지 않고 정확한 count 를 쓴다
+        SearchPage<MemberTeamDto> result = memberRepository.searchPageComplex(
+                new MemberSearchCondition(), PageRequest.of(0, 1), null, true);
+
+        assertThat(result.isTotalExact()).isTrue();
+        assertThat(result.getTotalElements()).isEqualTo(2);
+    }
+
+    @Test
+    void searchByUsernameFragment() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("remember", 30, teamA));
+
+        MemberSearchCondition contains = new MemberSearchCondition();
+        contains.setUsernameContains("BER");
+        assertThat(memberRepository.searchByMultipleWhere(contains)).extracting("username")
+                .containsExactlyInAnyOrder("member1", "member2", "remember");
+
+        MemberSearchCondition startsWith = new MemberSearchCondition();
+        startsWith.setUsernameStartsWith("mem");
+        startsWith.setAgeGoe(15);
+        assertThat(memberRepository.searchByMultipleWhere(startsWith)).extracting("username")
+                .containsExactly("member2");
+    }
+
+    @Test
+    void searchSlice() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamA));
+
+        MemberSearchCondition searchCondition = new MemberSearchCondition();
+        Slice<MemberTeamDto> first = memberRepository.searchSlice(searchCondition, PageRequest.of(0, 2));
+
+        assertThat(first.getContent()).extracting("username").containsExactly("member1", "member2");
+        assertThat(first.hasNext()).isTrue();
+
+        Slice<MemberTeamDto> second = memberRepository.searchSlice(searchCondition, PageRequest.of(1, 2));
+
+        assertThat(second.getContent()).extracting("username").containsExactly("member3");
+        assertThat(second.hasNext()).isFalse();
+    }
+
+    @Test
+    void searchByCursor() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 20, teamB));
+        em.persist(new Member("member4", 40, teamB));
+
+        MemberSearchCondition searchCondition = new MemberSearchCondition();
+        CursorSlice<MemberTeamDto> first = memberRepository.searchByCursor(searchCondition, null, 2);
+
+        assertThat(first.getContent()).extracting("username").containsExactly("member1", "member2");
+        assertThat(first.isHasNext()).isTrue();
+
+        CursorSlice<MemberTeamDto> second = memberRepository.searchByCursor(searchCondition,
+                MemberCursor.decode(first.getNextCursor()), 2);
+
+        assertThat(second.getContent()).extracting("username").containsExactly("member3", "member4");
+        assertThat(second.isHasNext()).isFalse();
+    }
+
+    @Test
+    void searchColumnar() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        Member member1 = new Member("member1", 10, teamA);
+        Member member2 = new Member("member2", 20, teamA);
+        Member member3 = new Member("member3", 30);
+        em.persist(member1);
+        em.persist(member2);
+        em.persist(member3);
+
+        MemberTeamColumns columns = memberRepository.searchColumnar(new MemberSearchCondition());
+
+        assertThat(columns.size()).isEqualTo(3);
+        List<MemberTeamDto> rows = new ArrayList<>();
+        columns.forEach(row -> rows.add(row.toDto()));
+        assertThat(rows).extracting("memberId", "username", "age", "teamId", "teamName").containsExactlyInAnyOrder(
+                tuple(member1.getId(), "member1", 10, teamA.getId(), "teamA"),
+                tuple(member2.getId(), "member2", 20, teamA.getId(), "teamA"),
+                tuple(member3.getId(), "member3", 30, null, null));
+        assertThat(columns.teamNameDictionary()).containsExactly("teamA");
+
+        MemberSearchCondition olderThan15 = new MemberSearchCondition();
+        olderThan15.setAgeGoe(15);
+        MemberTeamColumns filtered = memberRepository.searchColumnar(olderThan15);
+        assertThat(filtered.size()).isEqualTo(2);
+    }
+
     @Test
     void querydslPredicateExecutorTest() {
         Iterable<Member> result = memberRepository.findAll(
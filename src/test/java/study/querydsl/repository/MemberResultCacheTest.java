@@ -0,0 +1,96 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberSearchKey;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.event.EntityChangedEvent;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemberResultCacheTest {
+
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    MemberResultCache resultCache = new MemberResultCache(registry, true, 10, Duration.ofMinutes(1));
+    AtomicInteger queries = new AtomicInteger();
+
+    @Test
+    void hitAndInvalidate() {
+        MemberSearchKey key = key("teamA");
+
+        resultCache.get(key, loader(3));
+        resultCache.get(key, loader(3));
+        assertThat(queries).hasValue(1);
+
+        // 페이지가 다르면 다른 항목이다
+        resultCache.get(key, 0, 2, loader(2));
+        assertThat(queries).hasValue(2);
+
+        resultCache.onEntityChanged(EntityChangedEvent.bulk(Member.class));
+        resultCache.get(key, loader(3));
+        assertThat(queries).hasValue(3);
+
+        assertThat(registry.get("querydsl.result-cache.hit.ratio").gauge().value()).isGreaterThan(0);
+    }
+
+    @Test
+    void boundedByRows() {
+        // 항목의 무게는 row 수 + 1, 최대 10
+        resultCache.get(key("teamA"), loader(5));
+        resultCache.get(key("teamB"), loader(5));
+
+        assertThat(resultCache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void doNotStoreResultLoadedDuringInvalidation() {
+        MemberSearchKey key = key("teamA");
+
+        resultCache.get(key, () -> {
+            resultCache.invalidateAll();
+            return loader(1).get();
+        });
+        resultCache.get(key, loader(1));
+
+        assertThat(queries).hasValue(2);
+    }
+
+    @Test
+    void callersCannotChangeCachedRows() {
+        MemberSearchKey key = key("teamA");
+
+        resultCache.get(key, loader(1)).get(0).setUsername("changed");
+        List<MemberTeamDto> hit = resultCache.get(key, loader(1));
+        hit.get(0).setAge(99);
+
+        assertThat(queries).hasValue(1);
+        assertThat(resultCache.get(key, loader(1)).get(0))
+                .extracting(MemberTeamDto::getUsername, MemberTeamDto::getAge)
+                .containsExactly("member0", 0);
+    }
+
+    private MemberSearchKey key(String teamName) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName(teamName);
+        return MemberSearchKey.of(condition);
+    }
+
+    private Supplier<List<MemberTeamDto>> loader(int rows) {
+        return () -> {
+            queries.incrementAndGet();
+            List<MemberTeamDto> result = new ArrayList<>();
+            for (int i = 0; i < rows; i++) {
+                result.add(new MemberTeamDto((long) i, "member" + i, i, 1L, "teamA"));
+            }
+            return result;
+        };
+    }
+}
@@ -0,0 +1,49 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberSearchKey;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MemberSearchShapeCacheTest {
+
+    MemberSearchShapeCache shapeCache = new MemberSearchShapeCache();
+
+    @Test
+    void shape() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        assertThat(MemberSearchKey.of(condition).shape()).isEqualTo(0);
+
+        condition.setUsername(" ");
+        condition.setTeamName("teamB");
+        condition.setAgeLoe(40);
+        assertThat(MemberSearchKey.of(condition).shape())
+                .isEqualTo(MemberSearchKey.TEAM_NAME | MemberSearchKey.AGE_LOE);
+    }
+
+    @Test
+    void compiledQueries() {
+        for (int shape = 0; shape < MemberSearchKey.SHAPE_COUNT; shape++) {
+            String content = shapeCache.getContentQuery(shape);
+            String count = shapeCache.getCountQuery(shape);
+
+            assertThat(content).startsWith("select member1.id as memberId");
+            assertThat(count).startsWith("select count(member1)");
+            assertThat(content.contains("member1.username = ?")).isEqualTo((shape & MemberSearchKey.USERNAME) != 0);
+            assertThat(count.contains("team.name = ?")).isEqualTo((shape & MemberSearchKey.TEAM_NAME) != 0);
+            assertThat(shapeCache.getSampleCountQuery(shape)).endsWith("member1.id between ?" + (Integer.bitCount(shape) + 1)
+                    + " and ?" + (Integer.bitCount(shape) + 2));
+        }
+        assertThat(shapeCache.getContentQuery(0)).doesNotContain("where");
+    }
+
+    @Test
+    void rejectOffsetBeyondInt() {
+        MemberSearchKey key = MemberSearchKey.of(new MemberSearchCondition());
+
+        assertThatThrownBy(() -> shapeCache.fetch(null, key, Integer.MAX_VALUE + 1L, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
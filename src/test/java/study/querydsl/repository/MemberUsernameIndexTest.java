@@ -0,0 +1,118 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberSearchKey;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 커밋된 데이터로 색인 경로(candidates → id in + like)를 확인한다
+ * 쓰기 트랜잭션 안에서는 색인을 쓰지 않으므로 테스트 클래스에 @Transactional 을 붙이지 않고, 끝나면 직접 지운다
+ */
+@SpringBootTest
+class MemberUsernameIndexTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MemberUsernameIndex usernameIndex;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    MemberBulkRepository memberBulkRepository;
+
+    TransactionTemplate tx;
+    String token = "ix" + UUID.randomUUID().toString().replace("-", "").substring(0, 10);
+    Long teamId;
+    List<Long> memberIds = new ArrayList<>();
+
+    @BeforeEach
+    void before() {
+        tx = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        tx.executeWithoutResult(status -> {
+            memberIds.stream().map(id -> em.find(Member.class, id)).filter(m -> m != null).forEach(em::remove);
+            em.flush();
+            Team team = teamId == null ? null : em.find(Team.class, teamId);
+            if (team != null) {
+                em.remove(team);
+            }
+        });
+    }
+
+    @Test
+    void searchThroughIndexAndFallBackAfterBulkUpdate() throws InterruptedException {
+        tx.executeWithoutResult(status -> {
+            Team team = new Team("team-" + token);
+            em.persist(team);
+            teamId = team.getId();
+            for (String username : new String[]{token + "first", token + "second", "other" + token.substring(2)}) {
+                Member m = new Member(username, 10, team);
+                em.persist(m);
+                memberIds.add(m.getId());
+            }
+        });
+
+        MemberSearchCondition byToken = contains(token);
+        awaitIndexed(byToken, memberIds.get(0), memberIds.get(1));
+        assertThat(usernameIndex.candidates(MemberSearchKey.of(byToken))).doesNotContain(memberIds.get(2));
+        assertThat(memberJpaRepository.searchByMultipleWhere(byToken, true)).extracting("username")
+                .containsExactlyInAnyOrder(token + "first", token + "second");
+
+        // 벌크 update 는 커밋 후 BULK 이벤트로 색인을 무효화한다
+        Long renamedId = memberIds.get(2);
+        memberBulkRepository.updateInChunks(member.id.eq(renamedId),
+                update -> update.set(member.username, token + "renamed"),
+                BulkOptions.defaults());
+
+        MemberSearchCondition renamed = contains(token + "renamed");
+        assertThat(memberJpaRepository.searchByMultipleWhere(renamed, true)).extracting("memberId")
+                .containsExactly(renamedId);
+        assertThat(memberJpaRepository.searchByMultipleWhere(byToken, true)).hasSize(3);
+
+        awaitIndexed(renamed, renamedId);
+        assertThat(memberJpaRepository.searchByMultipleWhere(renamed, true)).extracting("memberId")
+                .containsExactly(renamedId);
+    }
+
+    private void awaitIndexed(MemberSearchCondition condition, Long... ids) throws InterruptedException {
+        MemberSearchKey key = MemberSearchKey.of(condition);
+        long deadline = System.currentTimeMillis() + 10_000;
+        List<Long> candidates = usernameIndex.candidates(key);
+        while ((candidates == null || !candidates.containsAll(List.of(ids))) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            candidates = usernameIndex.candidates(key);
+        }
+        assertThat(candidates).contains(ids);
+    }
+
+    private static MemberSearchCondition contains(String fragment) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsernameContains(fragment);
+        return condition;
+    }
+}
@@ -0,0 +1,143 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import javax.persistence.QueryTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QMember.member;
+
+@SpringBootTest
+class ParallelCountExecutorTest {
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    QueryMetrics queryMetrics;
+
+    ParallelCountExecutor executor;
+
+    @AfterEach
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void countOnSeparateConnection() {
+        executor = new ParallelCountExecutor(transactionManager, em, queryMetrics, true, 1, 1, Duration.ofSeconds(5));
+
+        ParallelCountExecutor.PendingCount count = executor.submit("test", "-",
+                query -> query.select(member).from(member).where(member.username.eq("nobody-parallel-count")));
+
+        assertThat(count.join()).isZero();
+    }
+
+    @Test
+    void countRunsInReadOnlyTransaction() {
+        executor = new ParallelCountExecutor(transactionManager, em, queryMetrics, true, 1, 1, Duration.ofSeconds(5));
+        AtomicBoolean readOnly = new AtomicBoolean();
+
+        ParallelCountExecutor.PendingCount count = executor.submit("test", "-", query -> {
+            // replication 라우팅은 이 값으로 replica 를 고른다
+            readOnly.set(TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+            return query.select(member).from(member).where(member.username.eq("nobody-parallel-count"));
+        });
+
+        assertThat(count.join()).isZero();
+        assertThat(readOnly).isTrue();
+    }
+
+    @Test
+    void cancelInterruptsRunningCount() throws InterruptedException {
+        executor = new ParallelCountExecutor(transactionManager, em, queryMetrics, true, 1, 1, Duration.ofSeconds(5));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        ParallelCountExecutor.PendingCount count = executor.submit("test", "-", blocking(started, interrupted));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        count.cancel();
+
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void joinTimesOutAndCancels() throws InterruptedException {
+        executor = new ParallelCountExecutor(transactionManager, em, queryMetrics, true, 1, 1, Duration.ofMillis(200));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        ParallelCountExecutor.PendingCount count = executor.submit("test", "-", blocking(started, interrupted));
+
+        assertThatThrownBy(count::join).isInstanceOf(QueryTimeoutException.class);
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void timeoutCountsFromSubmit() throws InterruptedException {
+        executor = new ParallelCountExecutor(transactionManager, em, queryMetrics, true, 1, 1, Duration.ofMillis(300));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        ParallelCountExecutor.PendingCount running = executor.submit("test", "-", blocking(started, interrupted));
+        ParallelCountExecutor.PendingCount queued = executor.submit("test", "-", blocking(started, interrupted));
+        Thread.sleep(300);
+
+        // 큐에서 기다린 시간으로 이미 timeout 이 지났으므로 join 은 바로 끝난다
+        long joinStarted = System.nanoTime();
+        assertThatThrownBy(queued::join).isInstanceOf(QueryTimeoutException.class);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - joinStarted)).isLessThan(200);
+        running.cancel();
+    }
+
+    @Test
+    void rejectWhenFull() throws InterruptedException {
+        executor = new ParallelCountExecutor(transactionManager, em, queryMetrics, true, 1, 1, Duration.ofSeconds(5));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        ParallelCountExecutor.PendingCount running = executor.submit("test", "-", blocking(started, interrupted));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        ParallelCountExecutor.PendingCount queued = executor.submit("test", "-", blocking(started, interrupted));
+
+        assertThat(queued).isNotNull();
+        assertThat(executor.submit("test", "-", blocking(started, interrupted))).isNull();
+        queued.cancel();
+        running.cancel();
+    }
+
+    /**
+     * 작업 스레드에서 interrupt 될 때까지 기다리는 count 쿼리
+     */
+    private static Function<JPAQueryFactory, JPAQuery> blocking(CountDownLatch started, CountDownLatch interrupted) {
+        return query -> {
+            started.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                Thread.currentThread().interrupt();
+            }
+            return query.select(member).from(member);
+        };
+    }
+}
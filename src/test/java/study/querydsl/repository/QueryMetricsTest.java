@@ -0,0 +1,66 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberSearchKey;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QueryMetricsTest {
+
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    QueryMetrics queryMetrics = new QueryMetrics(registry);
+
+    @Test
+    void timerAndRowsForOneSearch() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        condition.setAgeGoe(20);
+        String shape = QueryMetrics.shapeTag(MemberSearchKey.of(condition));
+
+        // 페이징 검색 한번 = content 쿼리 + count 쿼리
+        queryMetrics.content("searchPageComplex", shape, () -> List.of("member1", "member2", "member3"));
+        queryMetrics.count("searchPageComplex", shape, () -> 3L);
+
+        assertThat(shape).isEqualTo("teamName+ageGoe");
+        Timer content = registry.get(QueryMetrics.QUERY_TIMER)
+                .tags("method", "searchPageComplex", "shape", shape, "kind", QueryMetrics.CONTENT)
+                .timer();
+        Timer count = registry.get(QueryMetrics.QUERY_TIMER)
+                .tags("method", "searchPageComplex", "shape", shape, "kind", QueryMetrics.COUNT)
+                .timer();
+        DistributionSummary rows = registry.get(QueryMetrics.ROWS_SUMMARY)
+                .tags("method", "searchPageComplex", "shape", shape)
+                .summary();
+        assertThat(content.count()).isEqualTo(1);
+        assertThat(count.count()).isEqualTo(1);
+        assertThat(rows.count()).isEqualTo(1);
+        assertThat(rows.totalAmount()).isEqualTo(3);
+        assertThat(rows.getId().getBaseUnit()).isEqualTo("rows");
+    }
+
+    @Test
+    void metersAreReused() {
+        queryMetrics.content("searchByMultipleWhere", "none", () -> List.of(1));
+        queryMetrics.content("searchByMultipleWhere", "none", () -> List.of(1, 2));
+        queryMetrics.content("searchByMultipleWhere", "username", () -> List.of());
+
+        // (none, username) x (timer, summary)
+        assertThat(registry.getMeters()).hasSize(4);
+        assertThat(registry.get(QueryMetrics.QUERY_TIMER).tags("shape", "none").timer().count()).isEqualTo(2);
+        assertThat(registry.get(QueryMetrics.ROWS_SUMMARY).tags("shape", "none").summary().totalAmount()).isEqualTo(3);
+    }
+
+    @Test
+    void fragmentShapeTag() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsernameContains("ber");
+
+        assertThat(QueryMetrics.shapeTag(MemberSearchKey.of(condition))).isEqualTo("usernameFragment");
+    }
+}
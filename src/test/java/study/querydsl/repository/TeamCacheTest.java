@@ -0,0 +1,114 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * Team 2차 캐시(엔티티 + 자연 키)를 커밋된 데이터로 확인한다
+ * 캐시는 커밋 시점에 채워지므로 테스트 클래스에 @Transactional 을 붙이지 않고, 끝나면 직접 지운다
+ */
+@SpringBootTest
+class TeamCacheTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    TransactionTemplate tx;
+    Statistics statistics;
+    String name = "cache-" + UUID.randomUUID();
+    Long teamId;
+
+    @BeforeEach
+    void before() {
+        tx = new TransactionTemplate(transactionManager);
+        statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        tx.executeWithoutResult(status -> {
+            Team team = new Team(name);
+            em.persist(team);
+            teamId = team.getId();
+        });
+    }
+
+    @AfterEach
+    void cleanUp() {
+        tx.executeWithoutResult(status -> {
+            Team team = em.find(Team.class, teamId);
+            if (team != null) {
+                em.remove(team);
+            }
+        });
+    }
+
+    @Test
+    void findByNameHitsCache() {
+        assertThat(findByName(name)).isPresent();
+
+        statistics.clear();
+        Optional<Team> cached = findByName(name);
+
+        assertThat(cached).map(Team::getId).contains(teamId);
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(statistics.getNaturalIdCacheHitCount()).isPositive();
+        assertThat(statistics.getSecondLevelCacheHitCount()).isPositive();
+    }
+
+    @Test
+    void renameInvalidatesNaturalId() {
+        assertThat(findByName(name)).isPresent();
+        String renamed = name + "-renamed";
+
+        tx.executeWithoutResult(status -> em.find(Team.class, teamId).changeName(renamed));
+
+        assertThat(findByName(name)).isEmpty();
+        assertThat(findByName(renamed)).map(Team::getId).contains(teamId);
+    }
+
+    @Test
+    void bulkRenameEvictsRegion() {
+        assertThat(findByName(name)).isPresent();
+        String renamed = name + "-bulk";
+
+        tx.executeWithoutResult(status -> new JPAQueryFactory(em)
+                .update(team)
+                .set(team.name, renamed)
+                .where(team.id.eq(teamId))
+                .execute());
+
+        assertThat(findByName(name)).isEmpty();
+        assertThat(findByName(renamed)).map(Team::getName).contains(renamed);
+    }
+
+    @Test
+    void duplicateNameIsRejected() {
+        assertThatThrownBy(() -> tx.executeWithoutResult(status -> em.persist(new Team(name))))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    private Optional<Team> findByName(String teamName) {
+        return tx.execute(status -> teamRepository.findByName(teamName));
+    }
+}
@@ -0,0 +1,94 @@
+package study.querydsl.repository;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 페이지 크기, 팀 수가 늘어나도 실행되는 쿼리 수가 일정한지 Hibernate Statistics 로 확인한다
+ */
+@SpringBootTest
+@Transactional
+class TeamRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    Statistics statistics;
+
+    @BeforeEach
+    void before() {
+        statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 5, 20})
+    void findPageWithMembers(int pageSize) {
+        init(20, 3);
+
+        List<Team> teams = teamRepository.findPageWithMembers(PageRequest.of(0, pageSize));
+        int memberCount = teams.stream().mapToInt(t -> t.getMembers().size()).sum();
+
+        assertThat(teams).hasSize(pageSize);
+        assertThat(memberCount).isEqualTo(pageSize * 3);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 5, 20})
+    void memberTeamBatchFetch(int teamCount) {
+        init(teamCount, 3);
+
+        List<Member> members = memberJpaRepository.findAllQuerydsl();
+        members.forEach(m -> m.getTeam().getName());
+
+        // 회원 조회 1번 + 팀 프록시 IN 절 1번
+        assertThat(members).hasSize(teamCount * 3);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 5, 20})
+    void teamMembersBatchFetch(int teamCount) {
+        init(teamCount, 3);
+
+        List<Team> teams = teamRepository.findAll();
+        teams.forEach(t -> t.getMembers().size());
+
+        // 팀 조회 1번 + members 컬렉션 IN 절 1번
+        assertThat(teams).hasSize(teamCount);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    private void init(int teamCount, int membersPerTeam) {
+        for (int i = 0; i < teamCount; i++) {
+            Team team = new Team("team" + i);
+            em.persist(team);
+            for (int j = 0; j < membersPerTeam; j++) {
+                em.persist(new Member("member" + i + "_" + j, 10 + j, team));
+            }
+        }
+        em.flush();
+        em.clear();
+        statistics.clear();
+    }
+}
@@ -0,0 +1,49 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UsernameNgramIndexTest {
+
+    UsernameNgramIndex index = new UsernameNgramIndex();
+
+    @Test
+    void containsAndStartsWith() {
+        index.add(1L, "member1");
+        index.add(2L, "member2");
+        index.add(3L, "Remember");
+        index.add(4L, "teamMember");
+
+        assertThat(index.search("MBER", null, 100)).containsExactly(1, 2, 3, 4);
+        assertThat(index.search("ber2", null, 100)).containsExactly(2);
+        assertThat(index.search(null, "me", 100)).containsExactly(1, 2);
+        assertThat(index.search("member", "te", 100)).containsExactly(4);
+        assertThat(index.search("xyz", null, 100)).isEmpty();
+    }
+
+    @Test
+    void notResolvable() {
+        index.add(1L, "member1");
+        index.add(2L, "member2");
+
+        // 3글자 미만 contains 는 색인으로 좁힐 수 없다
+        assertThat(index.search("me", null, 100)).isNull();
+        // 후보가 limit 를 넘는다
+        assertThat(index.search("mem", null, 1)).isNull();
+    }
+
+    @Test
+    void updateAndRemove() {
+        index.add(1L, "member1");
+        index.add(2L, "member2");
+
+        index.remove(1L, "member1");
+        index.add(1L, "kim");
+        index.remove(2L, "member2");
+
+        assertThat(index.search("mem", null, 100)).isEmpty();
+        assertThat(index.search(null, "ki", 100)).containsExactly(1);
+        assertThat(index.size()).isEqualTo(1);
+    }
+}
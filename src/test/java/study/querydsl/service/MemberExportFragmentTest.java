@@ -0,0 +1,50 @@
+package study.querydsl.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * /v1/members/export 도 /v1/members 와 같이 usernameContains, usernameStartsWith 로 거른다
+ */
+@SpringBootTest
+@Transactional
+class MemberExportFragmentTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberExportService memberExportService;
+
+    @Test
+    void exportFiltersByUsernameFragment() throws IOException {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("remember", 20, teamA));
+        em.persist(new Member("other", 30, teamA));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsernameContains("member");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = memberExportService.exportNdjson(condition, out);
+
+        assertThat(rows).isEqualTo(2);
+        assertThat(out.toString(StandardCharsets.UTF_8))
+                .contains("\"username\":\"member1\"", "\"username\":\"remember\"")
+                .doesNotContain("\"username\":\"other\"");
+    }
+}
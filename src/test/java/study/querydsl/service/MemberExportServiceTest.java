@@ -0,0 +1,51 @@
+package study.querydsl.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberTeamDto;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MemberExportServiceTest {
+
+    @Test
+    void writeOneJsonPerLineAndFlushEveryFlushRows() throws IOException {
+        MemberExportService service = new MemberExportService(null, new ObjectMapper(), 1000, 5, Duration.ofMinutes(1));
+        CountingFlushStream out = new CountingFlushStream();
+        Stream<MemberTeamDto> rows = IntStream.rangeClosed(1, 10)
+                .mapToObj(i -> new MemberTeamDto((long) i, "member" + i, i, 1L, "teamA"));
+
+        long written = service.writeNdjson(rows, out);
+
+        assertThat(written).isEqualTo(10);
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize(10);
+        assertThat(lines[0]).isEqualTo("{\"memberId\":1,\"username\":\"member1\",\"age\":1,\"teamId\":1,\"teamName\":\"teamA\"}");
+        // row 마다 flush 하지 않는다: 5, 10 번째 row + 마지막 flush + generator close
+        assertThat(out.flushes).isLessThanOrEqualTo(4);
+    }
+
+    @Test
+    void rejectNonPositiveFlushRows() {
+        assertThatThrownBy(() -> new MemberExportService(null, new ObjectMapper(), 1000, 0, Duration.ofMinutes(1)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    static class CountingFlushStream extends ByteArrayOutputStream {
+
+        int flushes;
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package study.querydsl.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.ImportReport;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.EntityChangedEvent;
+
+import javax.persistence.EntityManager;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * StatelessSession 으로 실제로 커밋하므로 끝나면 직접 지운다. chunk 를 작게 잡아서 여러 chunk 로 나뉘게 한다
+ */
+@SpringBootTest(properties = "querydsl.import.chunk-size=2")
+@RecordApplicationEvents
+class MemberImportIntegrationTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MemberImportService memberImportService;
+
+    @Autowired
+    ApplicationEvents events;
+
+    TransactionTemplate tx;
+    String token = UUID.randomUUID().toString().substring(0, 8);
+    String teamName = "import-" + token;
+    ImportReport report;
+
+    @BeforeEach
+    void before() {
+        tx = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    void cleanUp() throws IOException {
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.username like :token")
+                    .setParameter("token", "%" + token + "%")
+                    .executeUpdate();
+            em.createQuery("delete from Team t where t.name = :name")
+                    .setParameter("name", teamName)
+                    .executeUpdate();
+        });
+        if (report != null && report.getRejectFile() != null) {
+            Files.deleteIfExists(Paths.get(report.getRejectFile()));
+        }
+    }
+
+    @Test
+    void importCsv() throws IOException {
+        String csv = "username,age,teamName\n"
+                + "kim-" + token + ",20," + teamName + "\n"
+                + "lee-" + token + ",x," + teamName + "\n"
+                + "park-" + token + ",30," + teamName + "\n"
+                + "choi-" + token + ",40\n";
+
+        report = memberImportService.importMembers(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), MemberImportService.Format.CSV);
+
+        assertThat(report.getRead()).isEqualTo(4);
+        assertThat(report.getImported()).isEqualTo(3);
+        assertThat(report.getRejected()).isEqualTo(1);
+        assertThat(report.getTeamsCreated()).isEqualTo(1);
+
+        // 줄 번호는 헤더를 포함해서 센다
+        List<String> rejects = Files.readAllLines(Paths.get(report.getRejectFile()));
+        assertThat(rejects).hasSize(1);
+        assertThat(rejects.get(0)).startsWith("3\t").contains("lee-" + token);
+
+        List<Member> members = tx.execute(status -> em.createQuery(
+                        "select m from Member m left join fetch m.team where m.username like :token order by m.username",
+                        Member.class)
+                .setParameter("token", "%" + token)
+                .getResultList());
+        assertThat(members)
+                .extracting(Member::getUsername, Member::getAge, m -> m.getTeam() == null ? null : m.getTeam().getName())
+                .containsExactly(
+                        tuple("choi-" + token, 40, null),
+                        tuple("kim-" + token, 20, teamName),
+                        tuple("park-" + token, 30, teamName));
+        // 두 chunk 가 같은 팀을 찾아 쓴다
+        assertThat(members.get(1).getTeam().getId()).isEqualTo(members.get(2).getTeam().getId());
+
+        assertThat(events.stream(EntityChangedEvent.class)
+                .filter(event -> event.getType() == EntityChangedEvent.Type.BULK))
+                .extracting(EntityChangedEvent::getEntityClass)
+                .contains(Member.class, Team.class);
+    }
+
+    @Test
+    void importWithoutRejectsLeavesNoRejectFile() throws IOException {
+        String ndjson = "{\"username\":\"kim-" + token + "\",\"age\":20,\"teamName\":\"" + teamName + "\"}\n";
+
+        report = memberImportService.importMembers(
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), MemberImportService.Format.NDJSON);
+
+        assertThat(report.getImported()).isEqualTo(1);
+        assertThat(report.getRejectFile()).isNull();
+    }
+}
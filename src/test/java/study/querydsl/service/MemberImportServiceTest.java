@@ -0,0 +1,48 @@
+package study.querydsl.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MemberImportServiceTest {
+
+    @Test
+    void parseCsv() {
+        MemberImportService.ImportRow row = MemberImportService.parseCsv("\"kim, \"\"jr\"\"\", 20 ,teamA");
+
+        assertThat(row.getUsername()).isEqualTo("kim, \"jr\"");
+        assertThat(row.getAge()).isEqualTo(20);
+        assertThat(row.getTeamName()).isEqualTo("teamA");
+
+        // 팀 이름은 비워도 된다
+        assertThat(MemberImportService.parseCsv("lee,30").getTeamName()).isNull();
+        assertThat(MemberImportService.parseCsv("lee,30,").getTeamName()).isNull();
+    }
+
+    @Test
+    void rejectInvalidCsv() {
+        assertThatThrownBy(() -> MemberImportService.parseCsv("kim,twenty,teamA"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("age");
+        assertThatThrownBy(() -> MemberImportService.parseCsv(",20,teamA"))
+                .hasMessageContaining("username");
+        assertThatThrownBy(() -> MemberImportService.parseCsv("kim,-1"))
+                .hasMessageContaining("negative");
+        assertThatThrownBy(() -> MemberImportService.parseCsv("\"kim,20"))
+                .hasMessageContaining("quote");
+        assertThatThrownBy(() -> MemberImportService.parseCsv("kim,20,teamA,extra"))
+                .hasMessageContaining("fields");
+    }
+
+    @Test
+    void headerMustMatchExactly() {
+        assertThat(MemberImportService.isHeader("username,age,teamName")).isTrue();
+        assertThat(MemberImportService.isHeader("\uFEFFUsername, Age ,TEAMNAME")).isTrue();
+
+        // username 으로 시작하는 회원 이름은 데이터다
+        assertThat(MemberImportService.isHeader("username1,20,teamA")).isFalse();
+        assertThat(MemberImportService.isHeader("usernames,age,teamName")).isFalse();
+        assertThat(MemberImportService.isHeader("username,age")).isFalse();
+    }
+}
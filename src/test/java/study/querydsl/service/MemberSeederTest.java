@@ -0,0 +1,83 @@
+package study.querydsl.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 적재는 청크마다 커밋하므로 테스트 클래스에 @Transactional 을 붙이지 않고, 끝나면 직접 지운다
+ */
+@SpringBootTest
+class MemberSeederTest {
+
+    static final List<String> TEAMS = List.of("team0", "team1", "team2");
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MemberSeeder memberSeeder;
+
+    @Autowired
+    LoggingSystem loggingSystem;
+
+    TransactionTemplate tx;
+
+    @BeforeEach
+    void before() {
+        tx = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.team.id in (select t.id from Team t where t.name in :names)")
+                    .setParameter("names", TEAMS)
+                    .executeUpdate();
+            em.createQuery("delete from Team t where t.name in :names")
+                    .setParameter("names", TEAMS)
+                    .executeUpdate();
+        });
+    }
+
+    @Test
+    void seedRoundRobinWithWriters() {
+        LogLevel sqlLevel = loggingSystem.getLoggerConfiguration("org.hibernate.SQL").getConfiguredLevel();
+
+        memberSeeder.seed(10, 3, MemberSeeder.Distribution.ROUND_ROBIN, 2.0, 2);
+
+        List<Long> perTeam = tx.execute(status -> em.createQuery(
+                        "select count(m) from Member m join m.team t where t.name in :names group by t.name order by t.name",
+                        Long.class)
+                .setParameter("names", TEAMS)
+                .getResultList());
+        assertThat(perTeam).containsExactly(4L, 3L, 3L);
+        // 적재가 끝나면 SQL 로그 레벨을 되돌린다
+        assertThat(loggingSystem.getLoggerConfiguration("org.hibernate.SQL").getConfiguredLevel()).isEqualTo(sqlLevel);
+    }
+
+    @Test
+    void rejectInvalidArguments() {
+        assertThatThrownBy(() -> memberSeeder.seed(10, 3, MemberSeeder.Distribution.ROUND_ROBIN, 2.0, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> memberSeeder.seed(10, 0, MemberSeeder.Distribution.ROUND_ROBIN, 2.0, 1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> memberSeeder.seed(10, 3, MemberSeeder.Distribution.SKEWED, 0, 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
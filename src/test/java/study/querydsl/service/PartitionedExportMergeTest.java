@@ -0,0 +1,134 @@
+package study.querydsl.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.ExportReport;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 구간마다 별도 트랜잭션에서 읽으므로 데이터를 실제로 커밋하고, 끝나면 직접 지운다
+ */
+@SpringBootTest
+class PartitionedExportMergeTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    PartitionedExportService partitionedExportService;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Value("${querydsl.export.partitioned.directory:${java.io.tmpdir}/member-export}")
+    String directory;
+
+    TransactionTemplate tx;
+    String teamName = "export-" + UUID.randomUUID();
+    Long teamId;
+    List<Long> memberIds = new ArrayList<>();
+
+    @BeforeEach
+    void before() {
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Team team = new Team(teamName);
+            em.persist(team);
+            teamId = team.getId();
+            for (int i = 0; i < 10; i++) {
+                Member member = new Member("export" + i, i, team);
+                em.persist(member);
+                memberIds.add(member.getId());
+            }
+        });
+    }
+
+    @AfterEach
+    void cleanUp() {
+        tx.executeWithoutResult(status -> {
+            memberIds.forEach(id -> em.remove(em.find(Member.class, id)));
+            em.flush();
+            em.remove(em.find(Team.class, teamId));
+        });
+    }
+
+    @Test
+    void mergedStreamIsOrderedById() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        ExportReport report = partitionedExportService.exportMerged(condition(), 3, out);
+
+        List<Long> exported = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            exported.add(objectMapper.readTree(line).get("memberId").asLong());
+        }
+        assertThat(exported).containsExactlyElementsOf(memberIds).isSorted();
+        assertThat(report.getRows()).isEqualTo(10);
+        assertThat(report.getPartitions()).hasSizeGreaterThan(1);
+    }
+
+    @Test
+    void filesAreReportedRelativeToExportDirectory() throws IOException {
+        ExportReport report = partitionedExportService.exportToFiles(condition(), 3);
+
+        assertThat(report.getRows()).isEqualTo(10);
+        for (ExportReport.Partition partition : report.getPartitions()) {
+            Path file = Paths.get(partition.getFile());
+            assertThat(file.isAbsolute()).isFalse();
+            assertThat(Paths.get(directory).resolve(file)).exists();
+        }
+    }
+
+    @Test
+    void mergedStreamAppliesUsernameFragment() throws IOException {
+        MemberSearchCondition condition = condition();
+        condition.setUsernameContains("XPORT3");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        ExportReport report = partitionedExportService.exportMerged(condition, 3, out);
+
+        assertThat(report.getRows()).isEqualTo(1);
+        assertThat(objectMapper.readTree(out.toString(StandardCharsets.UTF_8).trim()).get("memberId").asLong())
+                .isEqualTo(memberIds.get(3));
+    }
+
+    @Test
+    void eachExportGetsItsOwnFolder() throws IOException {
+        ExportReport first = partitionedExportService.exportToFiles(condition(), 1);
+        ExportReport second = partitionedExportService.exportToFiles(condition(), 1);
+
+        Path firstFolder = Paths.get(first.getPartitions().get(0).getFile()).getParent();
+        Path secondFolder = Paths.get(second.getPartitions().get(0).getFile()).getParent();
+        assertThat(firstFolder).isNotEqualTo(secondFolder);
+    }
+
+    private MemberSearchCondition condition() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName(teamName);
+        return condition;
+    }
+}
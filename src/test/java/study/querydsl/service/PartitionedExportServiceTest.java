@@ -0,0 +1,27 @@
+package study.querydsl.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PartitionedExportServiceTest {
+
+    @Test
+    void splitCoversIdRangeWithoutGaps() {
+        List<long[]> ranges = PartitionedExportService.split(1, 100, 3);
+
+        assertThat(ranges).containsExactly(
+                new long[]{1, 34},
+                new long[]{34, 67},
+                new long[]{67, 101});
+    }
+
+    @Test
+    void splitIntoFewerRangesThanIds() {
+        assertThat(PartitionedExportService.split(5, 6, 4)).containsExactly(
+                new long[]{5, 6},
+                new long[]{6, 7});
+    }
+}
@@ -0,0 +1,51 @@
+package study.querydsl.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SearchBulkheadTest {
+
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    SearchBulkhead bulkhead = new SearchBulkhead(registry, 1, 1, Duration.ofSeconds(2));
+
+    @AfterEach
+    void after() {
+        bulkhead.shutdown();
+    }
+
+    @Test
+    void rejectWhenSaturated() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> running = bulkhead.submit("test", () -> {
+            await(release);
+            return "running";
+        });
+        CompletableFuture<String> queued = bulkhead.submit("test", () -> "queued");
+
+        assertThatThrownBy(() -> bulkhead.submit("test", () -> "rejected"))
+                .isInstanceOf(BulkheadFullException.class)
+                .extracting("retryAfter").isEqualTo(Duration.ofSeconds(2));
+
+        release.countDown();
+        assertThat(running.get()).isEqualTo("running");
+        assertThat(queued.get()).isEqualTo("queued");
+        assertThat(registry.get("querydsl.async.rejected").counter().count()).isEqualTo(1);
+        assertThat(registry.get("querydsl.async.queue.wait").timer().count()).isEqualTo(2);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package study.querydsl.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.TeamStatisticsDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.EntityChangedEvent;
+
+import javax.persistence.EntityManager;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 커밋된 UPDATE 이벤트로 팀 통계가 갱신되는지 확인한다. 트랜잭션을 실제로 커밋하므로 끝나면 직접 지운다
+ */
+@SpringBootTest
+class TeamStatisticsChangeTeamTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    TeamStatisticsService teamStatisticsService;
+
+    TransactionTemplate tx;
+    String teamAName = "statsA-" + UUID.randomUUID();
+    String teamBName = "statsB-" + UUID.randomUUID();
+    Long teamAId;
+    Long teamBId;
+    Long movedId;
+    Long stayedId;
+
+    @BeforeEach
+    void before() {
+        tx = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        tx.executeWithoutResult(status -> {
+            for (Long id : new Long[]{movedId, stayedId}) {
+                Member member = id == null ? null : em.find(Member.class, id);
+                if (member != null) {
+                    em.remove(member);
+                }
+            }
+            em.flush();
+            for (Long id : new Long[]{teamAId, teamBId}) {
+                Team team = id == null ? null : em.find(Team.class, id);
+                if (team != null) {
+                    em.remove(team);
+                }
+            }
+        });
+    }
+
+    @Test
+    void moveMemberToAnotherTeam() {
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team(teamAName);
+            Team teamB = new Team(teamBName);
+            em.persist(teamA);
+            em.persist(teamB);
+            Member moved = new Member("moved", 20, teamA);
+            Member stayed = new Member("stayed", 30, teamA);
+            em.persist(moved);
+            em.persist(stayed);
+            teamAId = teamA.getId();
+            teamBId = teamB.getId();
+            movedId = moved.getId();
+            stayedId = stayed.getId();
+        });
+
+        tx.executeWithoutResult(status ->
+                em.find(Member.class, movedId).changeTeam(em.find(Team.class, teamBId)));
+
+        tx.executeWithoutResult(status -> {
+            Member moved = em.find(Member.class, movedId);
+            assertThat(moved).isNotNull();
+            assertThat(moved.getTeam().getId()).isEqualTo(teamBId);
+        });
+
+        TeamStatisticsDto teamA = teamStatisticsService.findByTeamName(teamAName).orElseThrow();
+        assertThat(teamA.getCount()).isEqualTo(1);
+        assertThat(teamA.getSum()).isEqualTo(30);
+        assertThat(teamA.getMin()).isEqualTo(30);
+
+        TeamStatisticsDto teamB = teamStatisticsService.findByTeamName(teamBName).orElseThrow();
+        assertThat(teamB.getCount()).isEqualTo(1);
+        assertThat(teamB.getSum()).isEqualTo(20);
+        assertThat(teamB.getMax()).isEqualTo(20);
+    }
+
+    @Test
+    void eventAlreadyInSnapshotIsNotAppliedAgain() {
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team(teamAName);
+            em.persist(teamA);
+            Member moved = new Member("moved", 20, teamA);
+            em.persist(moved);
+            teamAId = teamA.getId();
+            movedId = moved.getId();
+        });
+        teamStatisticsService.rebuild();
+        assertThat(teamStatisticsService.findByTeamName(teamAName).orElseThrow().getCount()).isEqualTo(1);
+
+        // 스냅샷보다 먼저 커밋된 INSERT 가 재집계 뒤에 늦게 도착한 경우
+        Member moved = tx.execute(status -> em.find(Member.class, movedId));
+        Team teamA = tx.execute(status -> em.find(Team.class, teamAId));
+        teamStatisticsService.onEntityChanged(new EntityChangedEvent(EntityChangedEvent.Type.INSERT, Member.class, moved,
+                new String[]{"age", "team"}, null, new Object[]{20, teamA}, 1));
+
+        TeamStatisticsDto stats = teamStatisticsService.findByTeamName(teamAName).orElseThrow();
+        assertThat(stats.getCount()).isEqualTo(1);
+        assertThat(stats.getSum()).isEqualTo(20);
+    }
+}
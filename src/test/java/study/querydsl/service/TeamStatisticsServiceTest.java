@@ -0,0 +1,68 @@
+package study.querydsl.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.TeamStatisticsDto;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class TeamStatisticsServiceTest {
+
+    TeamStatisticsService service = new TeamStatisticsService(null, null, true, Duration.ZERO);
+
+    @AfterEach
+    void after() {
+        service.shutdown();
+    }
+
+    @Test
+    void minMaxSurviveRemoval() {
+        service.teamNamed(1L, "teamA");
+        service.memberAdded(1L, 10);
+        service.memberAdded(1L, 20);
+        service.memberAdded(1L, 20);
+
+        // 최댓값 회원 하나가 빠져도 같은 나이 회원이 남아 있으면 max 는 그대로다
+        service.memberRemoved(1L, 20);
+        TeamStatisticsDto stats = service.findByTeamName("teamA").orElseThrow();
+        assertThat(stats.getCount()).isEqualTo(2);
+        assertThat(stats.getSum()).isEqualTo(30);
+        assertThat(stats.getAvg()).isEqualTo(15.0);
+        assertThat(stats.getMin()).isEqualTo(10);
+        assertThat(stats.getMax()).isEqualTo(20);
+
+        service.memberRemoved(1L, 20);
+        stats = service.findByTeamName("teamA").orElseThrow();
+        assertThat(stats.getMax()).isEqualTo(10);
+
+        // 회원이 없는 팀은 group by 결과처럼 빠진다
+        service.memberRemoved(1L, 10);
+        assertThat(service.findByTeamName("teamA")).isEmpty();
+    }
+
+    @Test
+    void changeTeamAndRename() {
+        service.teamNamed(1L, "teamA");
+        service.teamNamed(2L, "teamB");
+        service.memberAdded(1L, 30);
+        service.memberAdded(1L, 40);
+
+        // changeTeam 은 UPDATE 이벤트 하나로 예전 팀에서 빼고 새 팀에 더한다
+        service.memberRemoved(1L, 40);
+        service.memberAdded(2L, 40);
+        service.teamNamed(2L, "teamC");
+
+        assertThat(service.findAll())
+                .extracting(TeamStatisticsDto::getTeamName, TeamStatisticsDto::getCount, TeamStatisticsDto::getMax)
+                .containsExactly(
+                        tuple("teamA", 1L, 30),
+                        tuple("teamC", 1L, 40));
+        assertThat(service.findByTeamName("teamB")).isEmpty();
+
+        service.teamRemoved(2L);
+        assertThat(service.findAll()).hasSize(1);
+    }
+}